@@ -0,0 +1,194 @@
+package code;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import logic.Code;
+
+/**
+ * Output file of the codes as 64 bits word masks (see Code.getWords) : 8
+ * bytes per code, instead of 4 per word in text. The masks of a file, or of
+ * a run in a segment (see Segment), are sorted in the order of the text lines
+ * (see Code.sortKey), so the merge of the runs and the conversion to text
+ * (main) stream them.
+ *
+ * Format, big endian :
+ *
+ *     int   MAGIC
+ *     int   length of the run
+ *     int   1 if only the maximal codes are written, 0 otherwise
+ *     int   0
+ *     long  number of codes
+ *     long  word mask, per code
+ */
+public class BinaryOutputFile extends OutputFile
+{
+    /*
+     * Données :
+     *************************************************************************/
+
+    /** "CCB1" : premier entier du fichier. */
+    public static final int MAGIC  = 0x43434231;
+    /** Taille de l'en-tête, en octets. */
+    public static final int HEADER = 24;
+
+    private final int              length;
+    private final boolean          isMaximal;
+
+    /*
+     * Constructeurs :
+     *************************************************************************/
+
+    /** @param maximal only the maximal codes are written. */
+    public BinaryOutputFile(File file, int length_, boolean maximal)
+    {
+        super(file, null);
+        length = length_;
+        isMaximal = maximal;
+    }
+
+    /** Sortie dans un segment du pool (voir OutputFile), un run par sortie. */
+    public BinaryOutputFile(Segment.Pool pool, int length_, boolean maximal)
+    {
+        super(null, pool);
+        length = length_;
+        isMaximal = maximal;
+    }
+
+    /*
+     * Méthodes :
+     *************************************************************************/
+
+    @Override
+    protected void put(long words) throws IOException
+    {
+        reserve(8);
+        putLong(words);
+    }
+
+    /**
+     * En-tête : le nombre de codes est celui des codes gardés en mémoire,
+     * écrits triés à la fermeture, ou écrit par le tri sinon.
+     */
+    @Override
+    protected void begin()
+    {
+        putLong((long) MAGIC << 32 | length);
+        putLong((isMaximal ? 1L : 0L) << 32);
+        putLong(getKept());
+    }
+
+    @Override
+    protected void sort(Segment.Run written) throws IOException
+    { KeySort.sortRun(written, KeySort.Format.BINARY); }
+
+    private void putLong(long value)
+    {
+        for (int shift = 56; shift >= 0; shift -= 8) { buffer[position++] = (byte) (value >>> shift); }
+    }
+
+    /*
+     * Méthodes de classe :
+     *************************************************************************/
+
+    /** @return true si le fichier commence par MAGIC. */
+    public static boolean isBinary(File file)
+    {
+        if(file.length() < HEADER) { return false; }
+        try
+        {
+            DataInputStream input = new DataInputStream(new FileInputStream(file));
+            try { return input.readInt() == MAGIC; }
+            finally { input.close(); }
+        } catch (IOException ex) { return false; }
+    }
+
+    /** Conversion en texte : fichier [sortie], la sortie standard sans sortie. */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 1)
+        {
+            System.err.println("usage : BinaryOutputFile file.bin [file.txt]");
+            return;
+        }
+        Reader input = new Reader(new FileInputStream(args[0]), 1 << 16);
+        Writer output = new BufferedWriter(args.length > 1 ? new OutputStreamWriter(new FileOutputStream(args[1]), "US-ASCII")
+                                                           : new OutputStreamWriter(System.out, "US-ASCII"), 1 << 16);
+        try
+        {
+            while(!input.empty())
+            {
+                Code.print(input.pop(), output);
+                output.write('\n');
+            }
+        }
+        finally
+        {
+            input.close();
+            output.close();
+        }
+    }
+
+    /*
+     * Lecture d'un fichier ou d'un run, masque par masque :
+     *************************************************************************/
+    public static class Reader
+    {
+        private final DataInputStream input;
+        private int                   length;
+        private boolean               isMaximal;
+        private long                  count;
+        private long                  cache;
+        private boolean               empty;
+
+        public Reader(InputStream input_, int size) throws IOException
+        {
+            input = new DataInputStream(new BufferedInputStream(input_, size));
+            // Fichier vide : sortie jamais ouverte.
+            int magic;
+            try { magic = input.readInt(); }
+            catch (EOFException ex) { empty = true; return; }
+            if(magic != MAGIC) { throw new IOException("not a binary codes file"); }
+            length = input.readInt();
+            isMaximal = input.readInt() != 0;
+            input.readInt();
+            count = input.readLong();
+            reload();
+        }
+
+        public int getLength() { return length; }
+
+        public boolean isMaximal() { return isMaximal; }
+
+        /** @return Nombre de codes de l'en-tête (0 avant le tri du fichier). */
+        public long getCount() { return count; }
+
+        public boolean empty() { return empty; }
+
+        public long peek() { return cache; }
+
+        public long pop() throws IOException
+        {
+            long answer = cache;
+            reload();
+            return answer;
+        }
+
+        public void close() throws IOException { input.close(); }
+
+        private void reload() throws IOException
+        {
+            try { cache = input.readLong(); }
+            catch (EOFException ex) { empty = true; }
+        }
+    }
+}
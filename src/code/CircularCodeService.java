@@ -0,0 +1,212 @@
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import logic.Code;
+import logic.Counter;
+
+/**
+ * Counting service for sweeps over many lengths : the jobs are queued on a
+ * pool of threads living as long as the service, and each thread keeps a
+ * Counter per length. A job costs no thread creation, a small length is
+ * counted in a few microseconds.
+ *
+ * A job counts the whole index space of its length as one task, giving away
+ * the end of its range to the idle threads of the pool (as ForkJoinWorker),
+ * so a single job uses all the threads and several jobs share them.
+ */
+public class CircularCodeService
+{
+    /*
+     * Données :
+     *************************************************************************/
+
+    private final ForkJoinPool          pool;
+    private final boolean               isUsingBitEngine;
+    /** Compteurs d'un thread du pool, par longueur (index longueur-1). */
+    private final ThreadLocal<Counter[]> counters;
+
+    /*
+     * Constructeur :
+     *************************************************************************/
+
+    /**
+     * @param bitEngine use the bitset engine (BitCode) instead of the matrix
+     *                  one (Code).
+     */
+    public CircularCodeService(int nbThreads, boolean bitEngine)
+    {
+        pool = new ForkJoinPool(nbThreads);
+        isUsingBitEngine = bitEngine;
+        counters = new ThreadLocal<Counter[]>()
+        {
+            @Override
+            protected Counter[] initialValue() { return new Counter[20]; }
+        };
+    }
+
+    /*
+     * Méthodes :
+     *************************************************************************/
+
+    /**
+     * Queue the count of the circular codes of a length.
+     *
+     * @param countMax also count the maximal codes, and only write them.
+     * @param output sorted output file of the codes, null for none.
+     * @return The result, when the job is done.
+     */
+    public Future<Result> submit(int length, boolean countMax, File output)
+    { return pool.submit(new Job(length, countMax, output)); }
+
+    /** Finish the queued jobs, then stop the threads. */
+    public void shutdown() { pool.shutdown(); }
+
+    /** Compteur de la longueur, pour le thread courant du pool. */
+    private Counter counter(int length)
+    {
+        Counter[] mine = counters.get();
+        if(mine[length - 1] == null) { mine[length - 1] = new Counter(length, isUsingBitEngine); }
+        return mine[length - 1];
+    }
+
+    /*
+     * Résultat d'un calcul :
+     *************************************************************************/
+    public static class Result
+    {
+        private final int  length;
+        private long       circularCount;
+        private long       maximalCount;
+        private long       generated;
+
+        Result(int length_) { length = length_; }
+
+        public int getLength() { return length; }
+
+        public long getCircularCount() { return circularCount; }
+
+        /** @return Number of maximal codes, 0 if they were not counted. */
+        public long getMaximalCount() { return maximalCount; }
+
+        public long getGenerated() { return generated; }
+
+        synchronized void add(Counter counter)
+        {
+            circularCount += counter.getCircularCount();
+            maximalCount  += counter.getMaximalCount();
+            generated     += counter.getGenerated();
+        }
+    }
+
+    /*
+     * Calcul d'une longueur :
+     *************************************************************************/
+    private class Job extends RecursiveTask<Result>
+    {
+        static private final long serialVersionUID = 0;
+
+        private final int        length;
+        private final boolean    countMax;
+        private final File       output;
+        private final Result     result;
+        // Fichiers temporaires des plages :
+        private final List<File> files;
+
+        Job(int length_, boolean countMax_, File output_)
+        {
+            length   = length_;
+            countMax = countMax_;
+            output   = output_;
+            result   = new Result(length);
+            files    = new ArrayList<File>();
+        }
+
+        @Override
+        protected Result compute()
+        {
+            new RangeTask(this, 0, Code.codeCount(length) - 1).invoke();
+
+            // Fusion des fichiers triés des plages :
+            if(output != null)
+            {
+                try
+                {
+                    KeySort.mergeFiles(files, KeySort.Format.TEXT, output, Dispatcher.Progress.devNull,
+                                       result.getCircularCount(), false);
+                }
+                catch(IOException ex) { throw new RuntimeException(ex); }
+            }
+            return result;
+        }
+
+        /** Sortie d'une plage : un fichier temporaire à côté de la sortie. */
+        OutputFile newOutput()
+        {
+            if(output == null) { return OutputFile.devNull; }
+            try
+            {
+                File file = File.createTempFile(output.getName() + ".", "", output.getAbsoluteFile().getParentFile());
+                synchronized(files) { files.add(file); }
+                return new OutputFile(file);
+            }
+            catch(IOException ex) { throw new RuntimeException(ex); }
+        }
+    }
+
+    /*
+     * Tâche : une plage d'index d'un calcul, dont la fin peut être donnée :
+     *************************************************************************/
+    private class RangeTask extends RecursiveAction implements Counter.Splitter
+    {
+        static private final long serialVersionUID = 0;
+
+        private final Job             job;
+        private final long            start;
+        private final long            end;
+        private final List<RangeTask> given;
+
+        RangeTask(Job job_, long start_, long end_)
+        {
+            job   = job_;
+            start = start_;
+            end   = end_;
+            given = new ArrayList<RangeTask>();
+        }
+
+        @Override
+        protected void compute()
+        {
+            Counter counter = counter(job.length);
+            counter.setSplitter(this);
+            counter.count(start, end, job.newOutput(), job.countMax);
+            counter.setSplitter(null);
+            job.result.add(counter);
+
+            for(RangeTask task : given) { task.join(); }
+        }
+
+        /** Partager quand des threads du pool n'ont rien à faire. */
+        @Override
+        public boolean isWanted()
+        {
+            return pool.getActiveThreadCount() < pool.getParallelism()
+                   && pool.getQueuedTaskCount() == 0;
+        }
+
+        @Override
+        public void give(long startIndex, long endIndex)
+        {
+            RangeTask task = new RangeTask(job, startIndex, endIndex);
+            given.add(task);
+            task.fork();
+        }
+    }
+}
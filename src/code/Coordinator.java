@@ -0,0 +1,394 @@
+package code;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import code.Dispatcher.Worker;
+import logic.Code;
+import logic.Statistics;
+
+/**
+ * Worker leasing the partitions of the dispatcher to remote processes over
+ * TCP (see RemoteWorker), to spread a run over several machines. It is the
+ * only worker of the dispatcher : the coordinator counts nothing itself.
+ *
+ * Protocol, one line of text per message :
+ *
+ *     coordinator : RUN length growth max symmetry representatives codes
+ *     worker      : JOB
+ *     coordinator : RANGE id start end | WAIT | END
+ *     worker      : CODE code         (if codes, sorted, before DONE)
+ *     worker      : DONE id circular maximal generated c1 .. cL m1 .. mL
+ *     worker      : ALIVE             (every HEARTBEAT ms while counting)
+ *
+ * WAIT : no range now, but leased ones may come back. The leases of a
+ * connection which is closed, or silent for 4 heartbeats, are leased again
+ * to the next worker asking for one ; a DONE for a lease given back is
+ * ignored.
+ */
+public class Coordinator implements Worker
+{
+    /*
+     * Données :
+     *************************************************************************/
+
+    /** Délai entre deux ALIVE d'un worker distant, en ms. */
+    public static final int HEARTBEAT = 5000;
+
+    // Objets de travail :
+    private final Dispatcher     dispatcher;
+    private final ServerSocket   server;
+    private final Thread         acceptor;
+    private volatile boolean     isKilled;
+
+    // Plages : celle donnée par le dispatcher, celles louées et celles à
+    // louer (découpées ou perdues).
+    private long                 startIndex;
+    private long                 endIndex;
+    private long                 nextLease;
+    private final Map<Long, long[]> leases;
+    private final LinkedList<long[]> pending;
+    private boolean              isExhausted;
+
+    // Résultats des plages rendues :
+    private long                 circularCount;
+    private long                 maximalCount;
+    private long                 generated;
+    private long                 done;
+    private long                 ranges;
+    private final long[]         circularCounts;
+    private final long[]         maximalCounts;
+
+    /*
+     * Constructeur :
+     *************************************************************************/
+
+    /** Écouter sur le port donné (0 : un port libre, voir getPort). */
+    public Coordinator(Dispatcher dispatcher_, int port) throws IOException
+    {
+        dispatcher     = dispatcher_;
+        server         = new ServerSocket(port);
+        leases         = new HashMap<Long, long[]>();
+        pending        = new LinkedList<long[]>();
+        circularCounts = new long[dispatcher.getLongueur()];
+        maximalCounts  = new long[dispatcher.getLongueur()];
+        isKilled       = false;
+        isExhausted    = false;
+
+        // Une session par worker distant :
+        acceptor = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                while(!server.isClosed())
+                {
+                    try
+                    {
+                        Session session = new Session(server.accept());
+                        session.setDaemon(true);
+                        session.start();
+                    }
+                    catch(IOException ex)
+                    {
+                        if(!server.isClosed())
+                        { Logger.getLogger(Coordinator.class.getName()).log(Level.WARNING, null, ex); }
+                    }
+                }
+            }
+        });
+    }
+
+    public int getPort() { return server.getLocalPort(); }
+
+    /*
+     * Méthode interface Dispatcher.worker :
+     *************************************************************************/
+    @Override
+    public void set(long startIndex_, long endIndex_, OutputFile outputFile_)
+    {
+        startIndex = startIndex_;
+        endIndex   = endIndex_;
+        // Les codes viennent des workers distants, dans d'autres fichiers.
+        if(outputFile_ != null) { outputFile_.close(); }
+    }
+
+    @Override
+    public synchronized long getCircularCount() { return circularCount; }
+
+    @Override
+    public synchronized long getMaximalCount() { return maximalCount; }
+
+    @Override
+    public synchronized long[] getTotals()
+    { return new long[] { circularCount, maximalCount, generated, ranges }; }
+
+    @Override
+    public synchronized long[] getCircularCounts() { return circularCounts.clone(); }
+
+    @Override
+    public synchronized long[] getMaximalCounts() { return maximalCounts.clone(); }
+
+    /**
+     * Les compteurs de l'arbre de recherche restent sur les workers distants
+     * (--stats refusé avec --serve, voir Main).
+     */
+    @Override
+    public Statistics getStatistics()
+    { return dispatcher.isCountingStatistics() ? new Statistics(dispatcher.getLongueur()) : null; }
+
+    @Override
+    public synchronized long getGenerated() { return generated; }
+
+    /** Retourne le nombre d'index des plages rendues. */
+    @Override
+    public synchronized long getCount() { return done; }
+
+    @Override
+    public void start() { acceptor.start(); }
+
+    @Override
+    public void stop()
+    {
+        isKilled = true;
+        close();
+    }
+
+    /** Attendre que toutes les plages soient rendues. */
+    @Override
+    public void join() throws InterruptedException
+    {
+        synchronized(this)
+        {
+            while(!isKilled && !isFinished()) { wait(); }
+        }
+        close();
+        acceptor.join();
+    }
+
+    /*
+     * Plages louées :
+     *************************************************************************/
+
+    /**
+     * @return {id, début, fin} d'une plage à louer, null si aucune. Les
+     *         plages du dispatcher, seul worker, sont découpées en partitions
+     *         (voir Dispatcher.getPartitionSize).
+     */
+    private synchronized long[] lease()
+    {
+        if(pending.isEmpty() && !isExhausted)
+        {
+            dispatcher.nextJob(this);
+            long size = dispatcher.getPartitionSize();
+            for(long start = startIndex ; start <= endIndex ; start += size)
+            { pending.add(new long[] { start, Math.min(endIndex, start + size - 1) }); }
+            isExhausted = startIndex > endIndex;
+        }
+        long[] range = pending.poll();
+        if(range == null) { return null; }
+
+        leases.put(nextLease, range);
+        return new long[] { nextLease++, range[0], range[1] };
+    }
+
+    /**
+     * Résultats d'une plage louée.
+     * @return false si la location a été perdue entre temps.
+     */
+    private synchronized boolean done(long id, long[] counts, File file)
+    {
+        long[] range = leases.remove(id);
+        if(range == null) { return false; }
+
+        circularCount += counts[0];
+        maximalCount  += counts[1];
+        generated     += counts[2];
+        for(int i = 0 ; i < circularCounts.length ; ++i)
+        {
+            circularCounts[i] += counts[3 + i];
+            maximalCounts[i]  += counts[3 + circularCounts.length + i];
+        }
+        done += range[1] - range[0] + 1;
+        ++ranges;
+        dispatcher.rangeDone(range[0], range[1], counts, file);
+        notifyAll();
+        return true;
+    }
+
+    /** Relouer les plages d'une session perdue. */
+    private synchronized void lose(List<Long> ids)
+    {
+        long[] range;
+        for(long id : ids)
+        {
+            range = leases.remove(id);
+            if(range != null) { pending.addFirst(range); }
+        }
+        notifyAll();
+    }
+
+    private synchronized boolean isFinished()
+    { return isExhausted && leases.isEmpty() && pending.isEmpty(); }
+
+    private void close()
+    {
+        try { server.close(); }
+        catch(IOException ex)
+        { Logger.getLogger(Coordinator.class.getName()).log(Level.WARNING, null, ex); }
+    }
+
+    /*
+     * Connexion d'un worker distant :
+     *************************************************************************/
+    private class Session extends Thread
+    {
+        private final Socket     socket;
+        private final List<Long> ids;
+        // Codes de la plage en cours (null sans fichier de sortie), en
+        // texte ou en masques :
+        private File             file;
+        private Writer           codes;
+        private BinaryOutputFile masks;
+
+        Session(Socket socket_)
+        {
+            socket = socket_;
+            ids    = new ArrayList<Long>();
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                socket.setSoTimeout(4 * HEARTBEAT);
+                BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                Writer output = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "US-ASCII"));
+
+                output.write("RUN " + dispatcher.getLongueur() + " " + dispatcher.isGrowing()
+                             + " " + dispatcher.isCountingMax() + " " + dispatcher.getSymmetry()
+                             + " " + dispatcher.isWritingRepresentatives()
+                             + " " + (dispatcher.getOutputFile() != null) + "\n");
+                output.flush();
+
+                String line;
+                long[] range;
+                while(!isKilled && (line = input.readLine()) != null)
+                {
+                    if(line.equals("JOB"))
+                    {
+                        range = lease();
+                        if(range != null)
+                        {
+                            ids.add(range[0]);
+                            output.write("RANGE " + range[0] + " " + range[1] + " " + range[2] + "\n");
+                        }
+                        else
+                        { output.write(isFinished() ? "END\n" : "WAIT\n"); }
+                        output.flush();
+                    }
+                    else if(line.startsWith("CODE "))
+                    {
+                        if(file == null) { open(); }
+                        if(masks != null) { masks.writeWords(words(line)); }
+                        else
+                        {
+                            words(line);
+                            codes.write(line, 5, line.length() - 5);
+                            codes.write('\n');
+                        }
+                    }
+                    else if(line.startsWith("DONE "))
+                    { finish(line); }
+                    else if(!line.equals("ALIVE"))
+                    { throw new IOException("unexpected message : " + line); }
+                }
+            }
+            catch(SocketTimeoutException ex)
+            { Logger.getLogger(Coordinator.class.getName()).log(Level.WARNING, "worker silent : " + socket); }
+            catch(IOException ex)
+            { Logger.getLogger(Coordinator.class.getName()).log(Level.WARNING, null, ex); }
+            finally
+            {
+                // Plages en cours perdues :
+                lose(ids);
+                discard();
+                try { socket.close(); }
+                catch(IOException ex)
+                { Logger.getLogger(Coordinator.class.getName()).log(Level.WARNING, null, ex); }
+            }
+        }
+
+        /** Fichier des codes de la plage en cours, à côté du fichier de sortie. */
+        private void open() throws IOException
+        {
+            File output = dispatcher.getOutputFile();
+            if(output == null) { throw new IOException("codes without output file"); }
+            file = File.createTempFile(output.getName() + ".", "", output.getParentFile());
+            if(dispatcher.isWritingBinary())
+            { masks = new BinaryOutputFile(file, dispatcher.getLongueur(), dispatcher.isCountingMax()); }
+            else
+            { codes = new BufferedWriter(new FileWriter(file)); }
+        }
+
+        /** @return Masque des mots d'une ligne CODE code. */
+        private long words(String line) throws IOException
+        {
+            long words = Code.wordsOf(line.substring(5));
+            if(words == -1 || words == 0) { throw new IOException("bad message : " + line); }
+            return words;
+        }
+
+        /** Résultats de la plage : DONE id circular maximal generated .. */
+        private void finish(String line) throws IOException
+        {
+            String[] fields = line.split(" ");
+            long[] counts = new long[fields.length - 2];
+            long id;
+            try
+            {
+                id = Long.parseLong(fields[1]);
+                for(int i = 0 ; i < counts.length ; ++i) { counts[i] = Long.parseLong(fields[i + 2]); }
+            }
+            catch(NumberFormatException ex) { throw new IOException("bad message : " + line, ex); }
+            if(counts.length != 3 + 2 * dispatcher.getLongueur())
+            { throw new IOException("bad message : " + line); }
+
+            if(codes != null) { codes.close(); codes = null; }
+            if(masks != null) { masks.close(); masks = null; }
+
+            ids.remove(id);
+            if(!done(id, counts, file) && file != null) { file.delete(); }
+            file = null;
+        }
+
+        /** Oublier les codes de la plage en cours. */
+        private void discard()
+        {
+            try { if(codes != null) { codes.close(); } }
+            catch(IOException ex)
+            { Logger.getLogger(Coordinator.class.getName()).log(Level.WARNING, null, ex); }
+            if(masks != null) { masks.close(); }
+            if(file != null) { file.delete(); }
+            codes = null;
+            masks = null;
+            file = null;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package code;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import logic.Code;
+import logic.Counter;
+
+/**
+ * Estimated work of count over the index space of a length, to cut
+ * partitions of equal cost instead of equal size.
+ *
+ * The index space is cut in REGIONS regions of the same size, and the work
+ * of each one is estimated from SAMPLES random indexes (see
+ * Counter.estimate). The estimates are saved in a file per length, read
+ * back by the next runs. They are those of the whole tree : not used under a
+ * symmetry (see Dispatcher.setCostModel).
+ */
+public class CostModel
+{
+    /*
+     * Données :
+     *************************************************************************/
+
+    /** Nombre de régions de l'espace des index. */
+    public static final int REGIONS = 4096;
+    /** Nombre d'index tirés par région. */
+    public static final int SAMPLES = 64;
+
+    private final int      length;
+    /** Début de chaque région, et nombre total d'index à la fin. */
+    private final long[]   starts;
+    /** Coût cumulé au début de chaque région, coût total à la fin. */
+    private final double[] cumulated;
+
+    /*
+     * Constructeurs :
+     *************************************************************************/
+
+    /** Estimer les coûts de la longueur donnée. */
+    public CostModel(int length_, boolean bitEngine)
+    {
+        this(length_, estimate(length_, bitEngine));
+    }
+
+    private CostModel(int length_, double[] costs)
+    {
+        length = length_;
+        long total = Code.codeCount(length);
+        starts = new long[costs.length + 1];
+        cumulated = new double[costs.length + 1];
+        for(int i = 0 ; i < costs.length ; ++i)
+        {
+            starts[i] = total * i / costs.length;
+            cumulated[i + 1] = cumulated[i] + costs[i];
+        }
+        starts[costs.length] = total;
+    }
+
+    /**
+     * Lire les coûts de la longueur dans le répertoire, ou les estimer et les
+     * y enregistrer s'ils n'y sont pas.
+     */
+    public static CostModel load(File directory, int length, boolean bitEngine)
+    {
+        File file = new File(directory, "cost-" + length + ".txt");
+        if(file.exists())
+        {
+            try { return read(file, length); }
+            catch(IOException ex)
+            { Logger.getLogger(CostModel.class.getName()).log(Level.WARNING, null, ex); }
+        }
+
+        CostModel model = new CostModel(length, bitEngine);
+        try { model.save(file); }
+        catch(IOException ex)
+        { Logger.getLogger(CostModel.class.getName()).log(Level.SEVERE, null, ex); }
+        return model;
+    }
+
+    /*
+     * Méthodes :
+     *************************************************************************/
+
+    /**
+     * Partitions de coût estimé égal, les plus coûteuses d'abord : {début,
+     * fin} inclus pour chacune.
+     */
+    public long[][] partitions(int nbPartitions)
+    {
+        long total = starts[starts.length - 1];
+        nbPartitions = (int) Math.max(1, Math.min(nbPartitions, total));
+
+        // Bornes : là où le coût cumulé atteint j/nbPartitions du total.
+        long[] bounds = new long[nbPartitions + 1];
+        int region = 0;
+        for(int j = 1 ; j < nbPartitions ; ++j)
+        {
+            double target = cumulated[cumulated.length - 1] * j / nbPartitions;
+            while(region < starts.length - 2 && cumulated[region + 1] < target) { ++region; }
+            bounds[j] = indexAt(region, target);
+            // Au moins un index par partition :
+            bounds[j] = Math.max(bounds[j], bounds[j - 1] + 1);
+            bounds[j] = Math.min(bounds[j], total - (nbPartitions - j));
+        }
+        bounds[nbPartitions] = total;
+
+        long[][] result = new long[nbPartitions][];
+        for(int j = 0 ; j < nbPartitions ; ++j)
+        { result[j] = new long[] { bounds[j], bounds[j + 1] - 1 }; }
+
+        Arrays.sort(result, new Comparator<long[]>()
+        {
+            @Override
+            public int compare(long[] p1, long[] p2)
+            { return Double.compare(cost(p2), cost(p1)); }
+        });
+        return result;
+    }
+
+    /** Coût estimé de la plage {début, fin}. */
+    public double cost(long[] range)
+    { return cumulatedAt(range[1] + 1) - cumulatedAt(range[0]); }
+
+    public int getLength() { return length; }
+
+    /** Enregistrer les coûts : longueur et nombre de régions, puis un coût par ligne. */
+    public void save(File file) throws IOException
+    {
+        BufferedWriter output = new BufferedWriter(new FileWriter(file));
+        try
+        {
+            output.write(length + " " + (starts.length - 1) + "\n");
+            for(int i = 0 ; i + 1 < cumulated.length ; ++i)
+            { output.write((cumulated[i + 1] - cumulated[i]) + "\n"); }
+        }
+        finally { output.close(); }
+    }
+
+    /*
+     * Méthodes privées :
+     *************************************************************************/
+
+    /** Coût cumulé avant l'index, linéaire dans chaque région. */
+    private double cumulatedAt(long index)
+    {
+        int region = Arrays.binarySearch(starts, index);
+        if(region >= 0) { return cumulated[region]; }
+        region = -region - 2;
+        return cumulated[region] + (cumulated[region + 1] - cumulated[region])
+               * (index - starts[region]) / (starts[region + 1] - starts[region]);
+    }
+
+    /** Index de la région où le coût cumulé atteint target. */
+    private long indexAt(int region, double target)
+    {
+        double cost = cumulated[region + 1] - cumulated[region];
+        if(cost <= 0) { return starts[region]; }
+        double part = Math.min(1, Math.max(0, (target - cumulated[region]) / cost));
+        return starts[region] + (long) (part * (starts[region + 1] - starts[region]));
+    }
+
+    private static double[] estimate(int length, boolean bitEngine)
+    {
+        long total = Code.codeCount(length);
+        int regions = (int) Math.min(REGIONS, total);
+        double[] costs = new double[regions];
+        Counter counter = new Counter(length, bitEngine);
+        Random random = new Random(length);
+        for(int i = 0 ; i < regions ; ++i)
+        {
+            costs[i] = counter.estimate(total * i / regions, total * (i + 1) / regions - 1,
+                                        SAMPLES, random);
+        }
+        return costs;
+    }
+
+    private static CostModel read(File file, int length) throws IOException
+    {
+        BufferedReader input = new BufferedReader(new FileReader(file));
+        try
+        {
+            String[] header = input.readLine().trim().split(" ");
+            if(Integer.parseInt(header[0]) != length)
+            { throw new IOException(file + " : not the costs of length " + length); }
+            double[] costs = new double[Integer.parseInt(header[1])];
+            for(int i = 0 ; i < costs.length ; ++i)
+            { costs[i] = Double.parseDouble(input.readLine().trim()); }
+            return new CostModel(length, costs);
+        }
+        catch(RuntimeException ex) { throw new IOException(file + " : bad format", ex); }
+        finally { input.close(); }
+    }
+}
@@ -3,13 +3,20 @@ package code;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import gui.Main;
 import logic.Code;
+import logic.Counter;
+import logic.Statistics;
+import logic.Symmetry;
 
 public class Dispatcher
 {
@@ -22,22 +29,41 @@ public class Dispatcher
     private int                   longueur;
     private int                   nbPartitions;
     private boolean               isCountingMax;
+    private boolean               isUsingBitEngine;
+    private boolean               isGrowing;
+    private boolean               isCountingStatistics;
+    private Symmetry              symmetry;
+    private boolean               isWritingRepresentatives;
+    private boolean               isWritingBinary;
     private Progress              progress;
     private final File            outputFile;
-    private final ArrayList<File> outputFiles;
+    // Runs triés des partitions, à fusionner (null sans fichier de sortie) :
+    private final Segment.Pool    segments;
 
     // Contrôle du dispatch :
-    private long                  currentCount;
-    private long                  stopAt;
+    private final AtomicLong      cursor;
+    private long                  firstIndex;
     private long                  nbTotal;
-    private long                  perPartition;
-    private long                  missingFromPartitions;
-    private boolean               isKilled;
+    private long                  minPartition;
+    // Partitions de coût égal, les plus coûteuses d'abord (null sinon) :
+    private long[][]              jobs;
+    // Plages données par les workers occupés aux workers sans travail :
+    private final LinkedList<long[]> given;
+    private int                   nbWaiting;
+    private volatile boolean      isSplitWanted;
+    private volatile boolean      isKilled;
+    // Journal des plages comptées (null si aucun) :
+    private Journal               journal;
 
     // Tâches threadées :
     private List<Worker>          workers;
+    // Décompté à chaque worker sans plus de plage :
+    private CountDownLatch        finished;
+    // Lancement, et dernière vue de la progression (voir getLastSnapshot) :
+    private long                  launchTime;
+    private Snapshot              lastSnapshot;
 
-    // Délai de surveillance :
+    // Délai entre deux progressions :
     private final int             DELAY = 1000;
 
     /*
@@ -46,24 +72,55 @@ public class Dispatcher
      */
     public Dispatcher(int longueur_, int nbPartitions_, boolean isCountingMax_,
             Progress progress_, File outputFile_)
+    { this(longueur_, nbPartitions_, isCountingMax_, false, progress_, outputFile_); }
+
+    public Dispatcher(int longueur_, int nbPartitions_, boolean isCountingMax_,
+            boolean isUsingBitEngine_, Progress progress_, File outputFile_)
     {   // Récupérations des données :
         longueur = longueur_;
         nbPartitions = nbPartitions_;
         isCountingMax = isCountingMax_;
+        isUsingBitEngine = isUsingBitEngine_;
+        symmetry = Symmetry.NONE;
+        isWritingRepresentatives = false;
+        isWritingBinary = false;
         progress = progress_;
         outputFile = outputFile_;
 
         // Initialisation :
-        outputFiles = new ArrayList<File>();
+        segments = outputFile == null ? null : new Segment.Pool(outputFile);
         workers = new ArrayList<Worker>();
+        cursor = new AtomicLong();
+        given = new LinkedList<long[]>();
+        nbWaiting = 0;
+        isSplitWanted = false;
         isKilled = false;
+        isGrowing = false;
+        isCountingStatistics = false;
 
         // Initialisation des informations de dispatch :
-        nbTotal = Code.combinaison(longueur, 20) * (long) Math.pow(3, longueur);
-        currentCount = 0;
-        perPartition = nbTotal / nbPartitions;
-        missingFromPartitions = nbTotal % nbPartitions;
-        stopAt = nbTotal - missingFromPartitions - perPartition;
+        setTotal(Code.codeCount(longueur));
+    }
+
+    /**
+     * Découpage des index [0..total-1] en partitions : nbPartitions fixe la
+     * plus petite, total/nbPartitions index (voir nextJob).
+     */
+    private void setTotal(long total)
+    { setRange(0, total - 1); }
+
+    /**
+     * Ne compter que les index [start, end] : une partie de l'exécution,
+     * faite par un autre processus (voir RemoteWorker). Remplace le modèle de
+     * coût ; à appeler après setGrowth.
+     */
+    public void setRange(long start, long end)
+    {
+        firstIndex = start;
+        nbTotal = end + 1;
+        cursor.set(start);
+        minPartition = Math.max(1, (nbTotal - firstIndex) / nbPartitions);
+        jobs = null;
     }
 
     /*
@@ -71,6 +128,88 @@ public class Dispatcher
      * ***********************************************************************
      */
 
+    /**
+     * Ne visiter que les représentants des orbites sous un groupe de
+     * symétries. À appeler avant de lancer le dispatcher.
+     * @param representatives n'écrire que les représentants dans la sortie.
+     */
+    public void setSymmetry(Symmetry symmetry_, boolean representatives)
+    {
+        symmetry = symmetry_;
+        isWritingRepresentatives = representatives;
+    }
+
+    /**
+     * Écrire les codes en masques de 64 bits (voir BinaryOutputFile) au lieu
+     * de texte. À appeler avant de lancer le dispatcher.
+     */
+    public void setBinaryOutput(boolean binary) { isWritingBinary = binary; }
+
+    /**
+     * Compter toutes les longueurs de 1 à longueur en un seul parcours (voir
+     * Counter.grow) : les partitions sont prises dans l'arbre de tous les
+     * codes. À appeler avant de lancer le dispatcher.
+     */
+    public void setGrowth(boolean growth)
+    {
+        isGrowing = growth;
+        setTotal(growth ? Code.nodeCount(longueur)
+                        : Code.codeCount(longueur));
+    }
+
+    /**
+     * Découper nbPartitions partitions de coût estimé égal, données les plus
+     * coûteuses d'abord, au lieu des plages guidées. Sans effet en mode
+     * croissance ou avec une symétrie (l'arbre élagué n'a pas les coûts du
+     * modèle). À appeler après setGrowth, setSymmetry et avant de lancer le
+     * dispatcher.
+     */
+    public void setCostModel(CostModel model)
+    {
+        if(isGrowing || symmetry != Symmetry.NONE || model == null || model.getLength() != longueur
+           || firstIndex != 0 || nbTotal != Code.codeCount(longueur))
+        { return; }
+        jobs = model.partitions(nbPartitions);
+        cursor.set(0);
+    }
+
+    /**
+     * Noter les plages comptées dans le journal, et ne compter que celles qui
+     * n'y sont pas encore : les résultats et les fichiers de la première
+     * exécution sont repris. À appeler après setGrowth et setCostModel, avant
+     * de lancer le dispatcher.
+     */
+    public void setJournal(Journal journal_)
+    {
+        journal = journal_;
+        if(segments != null)
+        {
+            for(Segment.Run run : journal.getRuns()) { segments.add(run); }
+        }
+        if(journal.getIndexesDone() == 0) { return; }
+
+        // Reprise : des plages de minPartition index au lieu des plages
+        // guidées, moins celles du journal.
+        if(jobs == null)
+        {
+            jobs = new long[(int) ((nbTotal - firstIndex + minPartition - 1) / minPartition)][];
+            for(int i = 0 ; i < jobs.length ; ++i)
+            {
+                jobs[i] = new long[] { firstIndex + i * minPartition,
+                                       Math.min(nbTotal, firstIndex + (i + 1) * minPartition) - 1 };
+            }
+        }
+        jobs = journal.remaining(jobs).toArray(new long[0][]);
+        cursor.set(0);
+    }
+
+    /**
+     * Compter les noeuds de l'arbre de recherche par profondeur dans chaque
+     * worker (voir Statistics). À appeler avant de créer les workers.
+     */
+    public void setStatistics(boolean statistics)
+    { isCountingStatistics = statistics; }
+
     /**
      * Ajout d'un worker dans le dispatcher :
      */
@@ -79,36 +218,68 @@ public class Dispatcher
     /**
      * Arrêter le dispatcher :
      */
-    public void kill() { stop(); isKilled = true; }
+    public void kill()
+    {
+        stop();
+        isKilled = true;
+        synchronized(given) { given.notifyAll(); }
+
+        // Les workers arrêtés ne demandent plus de plage :
+        CountDownLatch latch = finished;
+        if(latch != null) { while(latch.getCount() > 0) { latch.countDown(); } }
+    }
 
     /**
-     * Lancer le dispatcher :
+     * Lancer le dispatcher : rend la main quand le dernier worker n'a plus de
+     * plage, sans attendre la progression suivante.
      */
     public void launch()
     {
-        // Lancer les workers :
-        start();
+        finished = new CountDownLatch(workers.size());
+        launchTime = System.nanoTime();
+        lastSnapshot = null;
 
-        // Surveiller l'exécution toutes les DELAY ms.
-        while(!isKilled && getCount() != nbTotal)
+        // Progression toutes les DELAY ms, dans un autre thread :
+        Timer ticker = new Timer("progress", true);
+        ticker.schedule(new TimerTask()
         {
-            progress.setValue("Computing...", getCount() / (float) nbTotal);
-            
-            try { Thread.sleep(DELAY); }
-            catch(InterruptedException ex)
-            { Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex); }
-        }
+            // Vue précédente, base des débits :
+            private Snapshot previous;
 
-        mergeFiles(progress, getCircularCount());
+            @Override
+            public void run()
+            {
+                previous = snapshot(previous);
+                synchronized(Dispatcher.this) { lastSnapshot = previous; }
+                progress.setValue("Computing...", (float) previous.getProgress());
+                if(journal != null) { journal.flush(segments); }
+            }
+        }, 0, DELAY);
 
-        // Mise à jour de la progression :
-        if(!isKilled)
-        { progress.setValue("Done", 1/*getCount() / (float) nbTotal*/); }
+        // Lancer les workers et attendre qu'ils n'aient plus de plage :
+        start();
+        try { finished.await(); }
+        catch(InterruptedException ex)
+        { Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex); }
 
-        // Attendre les travailleurs :
+        // Attendre les travailleurs : les plages louées par un coordinateur
+        // sont rendues, et leurs résultats visibles ici.
         try { join(); }
         catch(InterruptedException ex)
         { Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex); }
+        ticker.cancel();
+        if(journal != null) { journal.close(segments); }
+        try { if(segments != null) { segments.close(); } }
+        catch(IOException ex)
+        { Logger.getLogger(Dispatcher.class.getName()).log(Level.SEVERE, null, ex); }
+
+        // Arrêt avec un journal : les fichiers sont gardés pour la reprise.
+        if(!isKilled || journal == null)
+        { mergeFiles(progress, getCircularCount()); }
+
+        // Mise à jour de la progression :
+        if(!isKilled)
+        { progress.setValue("Done", 1/*getCount() / (float) nbTotal*/); }
     }
 
     /**
@@ -125,7 +296,7 @@ public class Dispatcher
     }
 
     /**
-     * Merge and sort the temporary files into the output file.
+     * Merge the sorted runs of the partitions into the output file.
      * @param progress callback to print progress
      * @param max number of circular codes
      */
@@ -133,14 +304,8 @@ public class Dispatcher
     {
         if(outputFile == null) return;
         try {
-            Comparator<String> cmp = new Comparator<String>() {
-
-                @Override
-                public int compare(String o1, String o2) {
-                    return o1.compareTo(o2);
-                }
-            };
-            ExternalSort.mergeSortedFiles(outputFiles, outputFile, cmp, progress, max);
+            KeySort.mergeRuns(segments.getRuns(), isWritingBinary ? KeySort.Format.BINARY : KeySort.Format.TEXT,
+                              outputFile, progress, max, false);
         } catch (IOException ex) {
             Logger.getLogger(Dispatcher.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -173,36 +338,129 @@ public class Dispatcher
          * */
     }
 
+    /**
+     * Nouvelle sortie d'une partition : un run dans le segment de la thread
+     * qui l'écrit, fusionné dans le fichier de sortie à la fin du calcul
+     * (devNull sans fichier de sortie).
+     */
+    public OutputFile newOutput()
+    {
+        if(outputFile == null) { return OutputFile.devNull; }
+        return isWritingBinary ? new BinaryOutputFile(segments, longueur, isCountingMax)
+                               : new OutputFile(segments);
+    }
+
     /**
      * Envoie une plage de calcul au worker en paramètre.
+     *
+     * Sans verrou : la plage est réservée en avançant un curseur atomique, le
+     * fichier temporaire est créé ensuite. Taille guidée : ce qui reste
+     * divisé par deux fois le nombre de workers, sans descendre sous
+     * minPartition ; les plages sont grandes au début et de plus en plus
+     * petites vers la fin. Ensuite, les fins de plage données par les workers
+     * encore occupés (voir nextGiven).
      */
-    public synchronized void nextJob(Worker worker)
+    public void nextJob(Worker worker)
     {
-        if(currentCount <= stopAt)
+        // Partitions de coût égal : la suivante de la liste.
+        if(jobs != null)
         {
-            long endCount = currentCount + perPartition;
+            long job = cursor.getAndIncrement();
+            if(job < jobs.length)
+            { worker.set(jobs[(int) job][0], jobs[(int) job][1], newOutput()); }
+            else
+            { nextGiven(worker); }
+            return;
+        }
 
-            // On ajoute les codes manquants à la dernière partition
-            if(currentCount == stopAt)
-            { endCount += missingFromPartitions; }
+        long start, end;
+        do
+        {
+            start = cursor.get();
+            if(start >= nbTotal) // plus de plage -> celles des autres
+            {
+                nextGiven(worker);
+                return;
+            }
+            end = start + Math.max(minPartition, (nbTotal - start) / (2 * workers.size()));
+            end = Math.min(end, nbTotal);
+        } while(!cursor.compareAndSet(start, end));
 
-            OutputFile output = OutputFile.devNull;
-            if(outputFile != null)
+        worker.set(start, end - 1, newOutput());
+    }
+
+    /**
+     * Un worker sans partition attend qu'un worker occupé lui donne la fin de
+     * sa plage (voir give). Quand tous les workers attendent, il n'y a plus
+     * de boulot -> End < Start.
+     */
+    private void nextGiven(Worker worker)
+    {
+        long[] range = null;
+        synchronized(given)
+        {
+            ++nbWaiting;
+            while(given.isEmpty() && nbWaiting < workers.size() && !isKilled)
             {
-                try
-                {
-                    File file = File.createTempFile(outputFile.getName() + ".", "", outputFile.getParentFile());
-                    outputFiles.add(file);
-                    output = new OutputFile(file);
-                } catch(IOException ex)
+                isSplitWanted = true;
+                try { given.wait(); }
+                catch(InterruptedException ex)
                 { Logger.getLogger(Dispatcher.class.getName()).log(Level.SEVERE, null, ex); }
             }
+            if(!given.isEmpty()) { range = given.removeFirst(); --nbWaiting; }
+            isSplitWanted = given.size() < nbWaiting && nbWaiting < workers.size();
+            given.notifyAll();
+        }
+
+        if(range == null)
+        {
+            worker.set(1, 0, null);
+            finished.countDown();
+        }
+        else { worker.set(range[0], range[1], newOutput()); }
+    }
+
+    /**
+     * Un worker a compté la plage [startIndex, endIndex] jusqu'au bout, avec
+     * le dernier appel du compteur, et fermé sa sortie : la noter dans le
+     * journal.
+     */
+    public void rangeDone(long startIndex, long endIndex, Counter counter, OutputFile output)
+    {
+        if(journal != null) { journal.add(startIndex, endIndex, counter, output); }
+    }
+
+    /**
+     * Une plage [startIndex, endIndex] comptée ailleurs (voir Coordinator) :
+     * ajouter son fichier de sortie triée (null si aucun) et la noter dans le
+     * journal, avec ses comptes (voir Journal.add).
+     */
+    public void rangeDone(long startIndex, long endIndex, long[] counts, File file)
+    {
+        Segment.Run run = file == null ? null : new Segment.Run(file);
+        if(run != null && segments != null) { segments.add(run); }
+        if(journal != null) { journal.add(startIndex, endIndex, counts, run); }
+    }
+
+    /**
+     * @return true si des workers attendent du travail : les workers occupés
+     *         donnent alors la fin de leur plage. Lu régulièrement par les
+     *         workers (voir Counter.Splitter).
+     */
+    public boolean isSplitWanted() { return isSplitWanted; }
 
-            worker.set(currentCount, endCount - 1, output);
-            currentCount = endCount;
+    /**
+     * Un worker occupé donne la plage [startIndex, endIndex], qu'il ne compte
+     * plus, au premier worker qui attend.
+     */
+    public void give(long startIndex, long endIndex)
+    {
+        synchronized(given)
+        {
+            given.addLast(new long[] { startIndex, endIndex });
+            isSplitWanted = given.size() < nbWaiting;
+            given.notifyAll();
         }
-        else // plus de boulot -> End < Start
-        { worker.set(1, 0, null); }
     }
 
     /*
@@ -210,12 +468,28 @@ public class Dispatcher
      * ***********************************************************************
      */
 
-    public long getTotal() { return nbTotal; }
+    /** @return Taille de la plus petite partition, total/nbPartitions index. */
+    public long getPartitionSize() { return minPartition; }
+
+    /** @return Nombre d'index à compter. */
+    public long getTotal() { return nbTotal - firstIndex; }
 
     public int getLongueur() { return longueur; }
 
     public boolean isCountingMax() { return isCountingMax; }
 
+    public boolean isUsingBitEngine() { return isUsingBitEngine; }
+
+    public boolean isGrowing() { return isGrowing; }
+
+    public boolean isCountingStatistics() { return isCountingStatistics; }
+
+    public Symmetry getSymmetry() { return symmetry; }
+
+    public boolean isWritingRepresentatives() { return isWritingRepresentatives; }
+
+    public boolean isWritingBinary() { return isWritingBinary; }
+
     public boolean isKilled() { return isKilled; }
 
     /*
@@ -225,28 +499,102 @@ public class Dispatcher
 
     public long getCircularCount()
     {
-        long result = 0;
+        long result = journal == null ? 0 : journal.getCircularCount();
         for(Worker w : workers) { result += w.getCircularCount(); }
         return result;
     }
 
     public long getMaximalCount()
     {
-        long result = 0;
+        long result = journal == null ? 0 : journal.getMaximalCount();
         for(Worker w : workers) { result += w.getMaximalCount(); }
         return result;
     }
 
+    /** @return Nombre de codes circulaires par longueur (index longueur-1). */
+    public long[] getCircularCounts()
+    {
+        long[] result = journal == null ? new long[longueur] : journal.getCircularCounts().clone();
+        for(Worker w : workers)
+        {
+            long[] counts = w.getCircularCounts();
+            for(int i = 0 ; i < longueur ; ++i) { result[i] += counts[i]; }
+        }
+        return result;
+    }
+
+    /** @return Nombre de codes maximaux par longueur (index longueur-1). */
+    public long[] getMaximalCounts()
+    {
+        long[] result = journal == null ? new long[longueur] : journal.getMaximalCounts().clone();
+        for(Worker w : workers)
+        {
+            long[] counts = w.getMaximalCounts();
+            for(int i = 0 ; i < longueur ; ++i) { result[i] += counts[i]; }
+        }
+        return result;
+    }
+
+    /**
+     * @return Somme des compteurs de l'arbre de recherche des workers, null
+     *         s'ils ne sont pas comptés. À lire à la fin du calcul.
+     */
+    public Statistics getStatistics()
+    {
+        if(!isCountingStatistics) { return null; }
+        Statistics result = new Statistics(longueur);
+        for(Worker w : workers) { result.add(w.getStatistics()); }
+        return result;
+    }
+
+    /**
+     * Vue de l'avancement, sans arrêter les workers : les résultats de chaque
+     * worker sont ceux de mêmes plages finies. Les débits sont mesurés depuis
+     * le lancement.
+     */
+    public Snapshot snapshot() { return snapshot(null); }
+
+    /**
+     * Même vue, les débits étant mesurés depuis la vue previous, gardée par
+     * l'appelant (depuis le lancement si null). Sans effet sur les autres
+     * vues.
+     */
+    public synchronized Snapshot snapshot(Snapshot previous)
+    {
+        long time = System.nanoTime();
+        long[] done = new long[workers.size()];
+        long[] totals = new long[4], worker;
+        for(int i = 0 ; i < done.length ; ++i)
+        {
+            done[i] = workers.get(i).getCount();
+            worker = workers.get(i).getTotals();
+            for(int j = 0 ; j < totals.length ; ++j) { totals[j] += worker[j]; }
+        }
+        if(journal != null)
+        {
+            totals[0] += journal.getCircularCount();
+            totals[1] += journal.getMaximalCount();
+            totals[2] += journal.getGenerated();
+        }
+
+        return new Snapshot(time, time - launchTime, getTotal(),
+                            journal == null ? 0 : journal.getIndexesDone(),
+                            done, totals, previous);
+    }
+
+    /** @return La dernière vue de la progression, prise toutes les DELAY ms, null avant la première. */
+    public synchronized Snapshot getLastSnapshot() { return lastSnapshot; }
+
     public long getGenerated()
     {
-        long result = 0;
+        long result = journal == null ? 0 : journal.getGenerated();
         for(Worker w : workers) { result += w.getGenerated(); }
         return result;
     }
 
     public long getCount()
     {
-        long result = 0;
+        long result = journal == null ? 0 : journal.getIndexesDone();
         for(Worker w : workers) { result += w.getCount(); }
         return result;
     }
@@ -298,6 +646,10 @@ public class Dispatcher
          * Mise en place des bornes pour la prochaine partition ainsi
          * que le fichier de sortie.
          * Si endIndex < startIndex, alors stop.
+         *
+         * Quand il n'y a plus de partition, nextJob attend qu'un worker
+         * occupé donne la fin de sa plage : un worker qui le peut lit
+         * isSplitWanted pendant le calcul et appelle give.
          */
         public void set(long startIndex, long endIndex, OutputFile file);
 
@@ -310,9 +662,33 @@ public class Dispatcher
          */
         public long getMaximalCount();
 
+        /**
+         * @return Nombre de codes circulaires trouvés par ce travailleur, par
+         *         longueur (mode croissance).
+         */
+        public long[] getCircularCounts();
+
+        /**
+         * @return Nombre de codes maximaux trouvés par ce travailleur, par
+         *         longueur (mode croissance).
+         */
+        public long[] getMaximalCounts();
+
+        /**
+         * @return Compteurs de l'arbre de recherche de ce travailleur, null
+         *         s'ils ne sont pas comptés.
+         */
+        public Statistics getStatistics();
+
         /** @return Nombre de code générés par ce travailleur. */
         public long getGenerated();
 
+        /**
+         * @return {circulaires, maximaux, générés, plages} des plages finies
+         *         par ce travailleur, lus ensemble (voir WorkerCounters).
+         */
+        public long[] getTotals();
+
         /** @return Nombre de codes «traités» par ce travailleur. */
         public long getCount();
 
@@ -325,4 +701,77 @@ public class Dispatcher
         /** Attends la fin du calcul et quitte le worker. */
         public void join() throws InterruptedException;
     }
+
+    /*
+     * Vue de l'avancement d'un calcul (voir snapshot) :
+     * ************************************************************************
+     */
+    public static class Snapshot
+    {
+        private final long   time;
+        private final long   elapsed;
+        private final long   total;
+        private final long   done;
+        private final long[] workerDone;
+        private final long[] totals;
+        private final double rate;
+        private final double[] workerRates;
+
+        Snapshot(long time_, long elapsed_, long total_, long resumed, long[] workerDone_,
+                 long[] totals_, Snapshot previous)
+        {
+            time = time_;
+            elapsed = elapsed_;
+            total = total_;
+            workerDone = workerDone_;
+            totals = totals_;
+
+            long sum = resumed;
+            for(long count : workerDone) { sum += count; }
+            done = sum;
+
+            // Débits depuis la vue précédente :
+            double seconds = (previous == null ? elapsed : time - previous.time) / 1e9;
+            workerRates = new double[workerDone.length];
+            for(int i = 0 ; i < workerDone.length ; ++i)
+            {
+                workerRates[i] = seconds <= 0 ? 0
+                               : (workerDone[i] - (previous == null ? 0 : previous.workerDone[i])) / seconds;
+            }
+            rate = seconds <= 0 ? 0 : (done - (previous == null ? resumed : previous.done)) / seconds;
+        }
+
+        /** @return Temps écoulé depuis le lancement, en ns. */
+        public long getElapsed() { return elapsed; }
+
+        /** @return Nombre d'index traités. */
+        public long getDone() { return done; }
+
+        public long getTotal() { return total; }
+
+        /** @return Taux d'avancement [0..1]. */
+        public double getProgress() { return total == 0 ? 1 : done / (double) total; }
+
+        /** @return Index traités par seconde depuis la vue précédente. */
+        public double getRate() { return rate; }
+
+        /** @return Index traités par seconde depuis le lancement. */
+        public double getAverageRate() { return elapsed <= 0 ? 0 : done / (elapsed / 1e9); }
+
+        /** @return Index traités par seconde par chaque worker, depuis la vue précédente. */
+        public double[] getWorkerRates() { return workerRates.clone(); }
+
+        /** @return Index traités par chaque worker. */
+        public long[] getWorkerDone() { return workerDone.clone(); }
+
+        /** @return Codes circulaires des plages finies. */
+        public long getCircularCount() { return totals[0]; }
+
+        public long getMaximalCount() { return totals[1]; }
+
+        public long getGenerated() { return totals[2]; }
+
+        /** @return Nombre de plages finies. */
+        public long getRanges() { return totals[3]; }
+    }
 }
\ No newline at end of file
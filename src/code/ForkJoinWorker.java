@@ -0,0 +1,291 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import code.Dispatcher.Worker;
+import logic.Counter;
+import logic.Statistics;
+
+/**
+ * Worker counting each partition of the dispatcher with a pool of threads
+ * stealing work from each other, instead of one thread per partition.
+ *
+ * A task is a range of indexes. While counting it, a thread gives away the
+ * end of its range, from the subtree following the one of the shortest
+ * prefix of its current code (see Counter.Splitter), as soon as some threads
+ * of the pool have nothing to do. The new task is stolen by an idle thread,
+ * which splits it again when needed : the partitions can be big, the tail of
+ * the run stays balanced.
+ *
+ * Only one such worker is added to the dispatcher, with the number of
+ * threads of the pool. The growth mode counts the ranges without splitting.
+ */
+public class ForkJoinWorker implements Worker
+{
+	/*
+	 * Données :
+	 *************************************************************************/
+
+	// Objets de travail :
+	private final Dispatcher     dispatcher;
+	private final ForkJoinPool   pool;
+	private final Thread         driver;
+	private volatile boolean     isKilled;
+
+	// Compteurs, un par thread du pool :
+	private final ThreadLocal<Slot> slots;
+	private final List<Slot>     allSlots;
+
+	// Index de partition :
+	private long                 startIndex;
+	private long                 endIndex;
+	private OutputFile           outputFile;
+
+	/*
+	 * Constructeur :
+	 *************************************************************************/
+	public ForkJoinWorker(Dispatcher dispatcher_, int nbThreads)
+	{
+		// Initialisations :
+		dispatcher = dispatcher_;
+		pool       = new ForkJoinPool(nbThreads);
+		allSlots   = new ArrayList<Slot>();
+		isKilled   = false;
+		slots      = new ThreadLocal<Slot>()
+		{
+			@Override
+			protected Slot initialValue()
+			{
+				Slot slot = new Slot();
+				synchronized(allSlots) { allSlots.add(slot); }
+				return slot;
+			}
+		};
+
+		// Demander les partitions une à une au dispatcher :
+		driver = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				dispatcher.nextJob(ForkJoinWorker.this);
+				while(startIndex <= endIndex && !isKilled)
+				{
+					pool.invoke(new RangeTask(startIndex, endIndex, outputFile));
+					dispatcher.nextJob(ForkJoinWorker.this);
+				}
+			}
+		});
+	}
+
+	/*
+	 * Méthode interface Dispatcher.worker :
+	 *************************************************************************/
+	@Override
+	public void set(long startIndex_, long endIndex_, OutputFile outputFile_)
+	{
+		startIndex = startIndex_;
+		endIndex   = endIndex_;
+		outputFile = outputFile_;
+	}
+
+	@Override
+	public long getCircularCount()
+	{
+		long result = 0;
+		for(Slot slot : slots()) { result += slot.counters.getCircularCount(); }
+		return result;
+	}
+
+	@Override
+	public long getMaximalCount()
+	{
+		long result = 0;
+		for(Slot slot : slots()) { result += slot.counters.getMaximalCount(); }
+		return result;
+	}
+
+	@Override
+	public long[] getTotals()
+	{
+		long[] result = new long[4], totals;
+		for(Slot slot : slots())
+		{
+			totals = slot.counters.read();
+			for(int i = 0 ; i < result.length ; ++i) { result[i] += totals[i]; }
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getCircularCounts()
+	{
+		long[] result = new long[dispatcher.getLongueur()];
+		for(Slot slot : slots())
+		{
+			for(int i = 0 ; i < result.length ; ++i) { result[i] += slot.circularCounts[i]; }
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getMaximalCounts()
+	{
+		long[] result = new long[dispatcher.getLongueur()];
+		for(Slot slot : slots())
+		{
+			for(int i = 0 ; i < result.length ; ++i) { result[i] += slot.maximalCounts[i]; }
+		}
+		return result;
+	}
+
+	@Override
+	public Statistics getStatistics()
+	{
+		if(!dispatcher.isCountingStatistics()) { return null; }
+		Statistics result = new Statistics(dispatcher.getLongueur());
+		for(Slot slot : slots()) { result.add(slot.counter.getStatistics()); }
+		return result;
+	}
+
+	@Override
+	public long getGenerated()
+	{
+		long result = 0;
+		for(Slot slot : slots()) { result += slot.counters.getGenerated(); }
+		return result;
+	}
+
+	/**
+	 * Retourne le nombre d'index traités jusqu'a présent par tous les threads
+	 * du pool, sous-arbres élagués compris.
+	 */
+	@Override
+	public long getCount()
+	{
+		long result = 0;
+		for(Slot slot : slots()) { result += slot.counter.getIndexesDone(); }
+		return result;
+	}
+
+	@Override
+	public void start() { driver.start(); }
+
+	/**
+	 * Les threads finissent le sous-arbre en cours : ils donnent toute la fin
+	 * de leur plage, qui est abandonnée.
+	 */
+	@Override
+	public void stop() { isKilled = true; }
+
+	@Override
+	public void join() throws InterruptedException
+	{
+		driver.join();
+		pool.shutdown();
+	}
+
+	/** Copie de la liste des compteurs, remplie par les threads du pool. */
+	private List<Slot> slots()
+	{
+		synchronized(allSlots) { return new ArrayList<Slot>(allSlots); }
+	}
+
+	/*
+	 * Compteurs d'un thread du pool :
+	 *************************************************************************/
+	private class Slot
+	{
+		final Counter        counter;
+		final WorkerCounters counters;
+		final long[]  circularCounts;
+		final long[]  maximalCounts;
+
+		Slot()
+		{
+			counter = new Counter(dispatcher.getLongueur(), dispatcher.isUsingBitEngine());
+			counters = new WorkerCounters();
+			counter.setSymmetry(dispatcher.getSymmetry(), dispatcher.isWritingRepresentatives());
+			counter.setStatistics(dispatcher.isCountingStatistics());
+			circularCounts = new long[dispatcher.getLongueur()];
+			maximalCounts  = new long[dispatcher.getLongueur()];
+		}
+
+		/** Ajouter les résultats du dernier appel du compteur. */
+		void add()
+		{
+			counters.add(counter);
+			for(int i = 0 ; i < circularCounts.length ; ++i)
+			{
+				circularCounts[i] += counter.getCircularCounts()[i];
+				maximalCounts[i]  += counter.getMaximalCounts()[i];
+			}
+		}
+	}
+
+	/*
+	 * Tâche : une plage d'index, dont la fin peut être donnée :
+	 *************************************************************************/
+	private class RangeTask extends RecursiveAction implements Counter.Splitter
+	{
+		static private final long serialVersionUID = 0;
+
+		private final long             start;
+		private final long             end;
+		private final OutputFile       output;
+		private final List<RangeTask>  given;
+		// Fin de la plage comptée, avant la première plage donnée :
+		private long                   last;
+
+		RangeTask(long start_, long end_, OutputFile output_)
+		{
+			start  = start_;
+			end    = end_;
+			last   = end_;
+			output = output_;
+			given  = new ArrayList<RangeTask>();
+		}
+
+		@Override
+		protected void compute()
+		{
+			Slot slot = slots.get();
+
+			// Le compteur est libre : les tâches données ne sont attendues
+			// qu'après la fin du comptage.
+			if(dispatcher.isGrowing())
+			{ slot.counter.grow(start, end, output, dispatcher.isCountingMax()); }
+			else
+			{
+				slot.counter.setSplitter(this);
+				slot.counter.count(start, end, output, dispatcher.isCountingMax());
+				slot.counter.setSplitter(null);
+			}
+			dispatcher.rangeDone(start, last, slot.counter, output);
+			slot.add();
+
+			for(RangeTask task : given) { task.join(); }
+		}
+
+		/** Partager quand des threads du pool n'ont rien à faire. */
+		@Override
+		public boolean isWanted()
+		{
+			return isKilled
+			       || (pool.getActiveThreadCount() < pool.getParallelism()
+			           && pool.getQueuedTaskCount() == 0);
+		}
+
+		@Override
+		public void give(long startIndex, long endIndex)
+		{
+			last = startIndex - 1;
+			if(isKilled) { return; }
+			RangeTask task = new RangeTask(startIndex, endIndex, dispatcher.newOutput());
+			given.add(task);
+			task.fork();
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package code;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import logic.Counter;
+import logic.Symmetry;
+
+/**
+ * Journal of the ranges counted by a run, to resume it after a crash or a
+ * stop.
+ *
+ * A line is appended each time a worker has counted a range to its end, with
+ * the counts of the range and its output, already sorted : the run of
+ * length bytes at offset in file (see Segment).
+ *
+ *     start end circular maximal generated c1 .. cL m1 .. mL offset length file
+ *
+ * cI and mI being the circular and maximal counts per length, file "-" if
+ * none. The first line holds the parameters of the run, and its first and
+ * last indexes (see Dispatcher.setRange) and the format of its outputs : a
+ * resumed run must have the same ones. A range whose run is missing is counted again.
+ * The file is only appended to : a resumed run cuts an incomplete last line
+ * and writes after the valid ones, and a new journal is not started over a
+ * non-empty file.
+ * The workers only write in a buffer. Every DELAY ms the dispatcher forces
+ * to the disk the files of the buffered runs, then writes the lines and
+ * forces the journal (see flush) : a line never reaches the disk before its
+ * run, and a crash or a reboot loses the last second at most.
+ */
+public class Journal
+{
+    /*
+     * Données :
+     *************************************************************************/
+
+    private final File           file;
+    private final int            length;
+    private final FileOutputStream stream;
+    private final BufferedWriter output;
+    // Lignes pas encore écrites, et fichiers de leurs runs :
+    private StringBuilder        pending;
+    private Set<File>            files;
+    private boolean              isClosed;
+    // Une écriture à la fois :
+    private final Object         writing = new Object();
+
+    // Plages lues à l'ouverture, et leurs résultats :
+    private final List<long[]>   ranges;
+    private final List<Segment.Run> runs;
+    private long                 circularCount;
+    private long                 maximalCount;
+    private long                 generated;
+    private long                 done;
+    private final long[]         circularCounts;
+    private final long[]         maximalCounts;
+
+    /*
+     * Constructeur :
+     *************************************************************************/
+
+    /**
+     * Open the journal of a run.
+     *
+     * @param resume read the ranges already counted in the file, which must
+     *               be the journal of a run with the same parameters ;
+     *               otherwise a new journal is started, in a missing or
+     *               empty file only.
+     * @param firstIndex first index of the run (see Dispatcher.setRange).
+     * @param lastIndex  last index of the run.
+     * @param binary     codes written as word masks (see BinaryOutputFile).
+     */
+    public Journal(File file_, int length_, boolean growth, boolean max, Symmetry symmetry,
+                   boolean representatives, long firstIndex, long lastIndex, boolean binary,
+                   boolean resume) throws IOException
+    {
+        file = file_;
+        length = length_;
+        ranges = new ArrayList<long[]>();
+        runs = new ArrayList<Segment.Run>();
+        circularCounts = new long[length];
+        maximalCounts = new long[length];
+
+        String header = "journal " + length + (growth ? " growth" : " count")
+                        + (max ? " max " : " circular ") + symmetry
+                        + (representatives ? " representatives" : " all")
+                        + " " + firstIndex + " " + lastIndex
+                        + (binary ? " binary" : " text");
+        if(!resume && file.length() > 0)
+        { throw new IOException(file + " : journal of another run, resume it with --resume or remove it"); }
+
+        // Couper ce qui suit la dernière ligne valide (une ligne incomplète,
+        // écrite pendant un arrêt), puis écrire à la suite.
+        long end = resume && file.exists() ? read(header) : 0;
+        if(file.exists())
+        {
+            RandomAccessFile access = new RandomAccessFile(file, "rw");
+            try { access.setLength(end); }
+            finally { access.close(); }
+        }
+        stream = new FileOutputStream(file, true);
+        output = new BufferedWriter(new OutputStreamWriter(stream));
+        if(end == 0) { output.write(header + "\n"); }
+        output.flush();
+        stream.getChannel().force(true);
+        pending = new StringBuilder();
+        files = new HashSet<File>();
+    }
+
+    /*
+     * Méthodes :
+     *************************************************************************/
+
+    /**
+     * Record that the range [startIndex, endIndex] has been counted by the
+     * last call of the counter, its output closed. Only writes in a buffer.
+     */
+    public void add(long startIndex, long endIndex, Counter counter, OutputFile output_)
+    {
+        long[] counts = new long[3 + 2 * length];
+        counts[0] = counter.getCircularCount();
+        counts[1] = counter.getMaximalCount();
+        counts[2] = counter.getGenerated();
+        System.arraycopy(counter.getCircularCounts(), 0, counts, 3, length);
+        System.arraycopy(counter.getMaximalCounts(), 0, counts, 3 + length, length);
+        add(startIndex, endIndex, counts, output_ == null ? null : output_.getRun());
+    }
+
+    /**
+     * Record that the range [startIndex, endIndex] has been counted, with the
+     * given counts : circular, maximal, generated, c1 .. cL, m1 .. mL. Its
+     * output is the run, null if none.
+     */
+    public synchronized void add(long startIndex, long endIndex, long[] counts, Segment.Run run)
+    {
+        if(isClosed) { return; }
+        pending.append(startIndex).append(' ').append(endIndex);
+        for(long count : counts) { pending.append(' ').append(count); }
+        if(run == null) { pending.append(" 0 0 -\n"); }
+        else
+        {
+            pending.append(' ').append(run.getOffset()).append(' ').append(run.getLength())
+                   .append(' ').append(run.getFile().getAbsolutePath()).append('\n');
+            files.add(run.getFile());
+        }
+    }
+
+    /**
+     * Write the buffered lines to the disk, after the files of their runs :
+     * through the channels of the segments of pool (null if none), or by
+     * opening them (see Segment.Pool.force).
+     */
+    public void flush(Segment.Pool pool)
+    {
+        synchronized(writing)
+        {
+            String lines;
+            Set<File> forced;
+            synchronized(this)
+            {
+                if(isClosed || pending.length() == 0) { return; }
+                lines = pending.toString();
+                forced = files;
+                pending = new StringBuilder();
+                files = new HashSet<File>();
+            }
+            try
+            {
+                if(pool != null) { pool.force(forced); }
+                else { for(File run : forced) { Segment.force(run); } }
+                output.write(lines);
+                output.flush();
+                stream.getChannel().force(false);
+            }
+            catch(IOException ex) { Logger.getLogger(Journal.class.getName()).log(Level.SEVERE, null, ex); }
+        }
+    }
+
+    /** Write the buffered lines (see flush) and close the file. */
+    public void close(Segment.Pool pool)
+    {
+        synchronized(writing)
+        {
+            flush(pool);
+            synchronized(this)
+            {
+                if(isClosed) { return; }
+                isClosed = true;
+            }
+            try { output.close(); }
+            catch(IOException ex) { Logger.getLogger(Journal.class.getName()).log(Level.SEVERE, null, ex); }
+        }
+    }
+
+    /**
+     * @return The parts of the ranges which were not counted by the resumed
+     *         run, in the same order. The counted ranges, sorted and
+     *         disjoint, are searched from the first one ending at or after
+     *         the start of each job.
+     */
+    public List<long[]> remaining(long[][] jobs)
+    {
+        List<long[]> result = new ArrayList<long[]>();
+        long start;
+        long[] range;
+        for(long[] job : jobs)
+        {
+            start = job[0];
+            for(int i = firstEndingAfter(start) ; i < ranges.size() ; ++i)
+            {
+                range = ranges.get(i);
+                if(range[0] > job[1]) { break; }
+                if(range[0] > start) { result.add(new long[] { start, range[0] - 1 }); }
+                start = range[1] + 1;
+            }
+            if(start <= job[1]) { result.add(new long[] { start, job[1] }); }
+        }
+        return result;
+    }
+
+    public File getFile() { return file; }
+
+    /** @return Output runs of the resumed run. */
+    public List<Segment.Run> getRuns() { return runs; }
+
+    /** @return Counts of the resumed run. */
+    public long getCircularCount() { return circularCount; }
+
+    public long getMaximalCount() { return maximalCount; }
+
+    public long getGenerated() { return generated; }
+
+    /** @return Number of indexes counted by the resumed run. */
+    public long getIndexesDone() { return done; }
+
+    public long[] getCircularCounts() { return circularCounts; }
+
+    public long[] getMaximalCounts() { return maximalCounts; }
+
+    /*
+     * Méthodes privées :
+     *************************************************************************/
+
+    /** @return Index of the first counted range ending at or after index. */
+    private int firstEndingAfter(long index)
+    {
+        int low = 0, high = ranges.size();
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(ranges.get(middle)[1] < index) { low = middle + 1; }
+            else { high = middle; }
+        }
+        return low;
+    }
+
+    /**
+     * Read the ranges of the file, up to its first line which is not valid.
+     * @return The end of the last valid line, 0 for a journal without a
+     *         complete header.
+     */
+    private long read(String header) throws IOException
+    {
+        InputStream input = new BufferedInputStream(new FileInputStream(file));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long position = 0, end = -1;
+        try
+        {
+            // Comptes, puis début et taille du run :
+            long[] counts = new long[7 + 2 * length];
+            String line;
+            int b;
+            while((b = input.read()) >= 0)
+            {
+                ++position;
+                if(b != '\n') { bytes.write(b); continue; }
+                line = bytes.toString();
+                bytes.reset();
+
+                if(end < 0)
+                {
+                    if(!header.equals(line))
+                    { throw new IOException(file + " : not the journal of this run (" + line + ")"); }
+                }
+                else if(!parse(line, counts)) { break; }
+                end = position;
+            }
+        }
+        finally { input.close(); }
+
+        // En-tête incomplet : aucune plage.
+        if(end < 0)
+        {
+            if(!header.startsWith(bytes.toString()))
+            { throw new IOException(file + " : not the journal of this run (" + bytes + ")"); }
+            end = 0;
+        }
+
+        Collections.sort(ranges, new Comparator<long[]>()
+        {
+            @Override
+            public int compare(long[] r1, long[] r2) { return Long.compare(r1[0], r2[0]); }
+        });
+        return end;
+    }
+
+    /**
+     * Add the range of a line to the ranges read, unless its run is missing.
+     * @return false if the line is not valid.
+     */
+    private boolean parse(String line, long[] counts)
+    {
+        String[] fields = line.split(" ", counts.length + 1);
+        if(fields.length != counts.length + 1) { return false; }
+        try
+        {
+            for(int i = 0 ; i < counts.length ; ++i) { counts[i] = Long.parseLong(fields[i]); }
+        }
+        catch(NumberFormatException ex) { return false; }
+
+        // Sortie perdue : la plage est à refaire.
+        Segment.Run run = fields[counts.length].equals("-") ? null
+                          : new Segment.Run(new File(fields[counts.length]), counts[counts.length - 2],
+                                            counts[counts.length - 1]);
+        if(run != null && !run.exists()) { return true; }
+
+        ranges.add(new long[] { counts[0], counts[1] });
+        done += counts[1] - counts[0] + 1;
+        circularCount += counts[2];
+        maximalCount += counts[3];
+        generated += counts[4];
+        for(int i = 0 ; i < length ; ++i)
+        {
+            circularCounts[i] += counts[5 + i];
+            maximalCounts[i] += counts[5 + length + i];
+        }
+        if(run != null) { runs.add(run); }
+        return true;
+    }
+}
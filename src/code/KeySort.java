@@ -0,0 +1,607 @@
+package code;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import logic.Code;
+
+/**
+ * External sort of the output files on the 64 bits sort keys of the codes
+ * (see Code.sortKey), instead of strings : a record is a long in memory,
+ * whatever its format on disk (a text line or a word mask, see Format).
+ *
+ * Sort (sortRun) : the keys are read by chunks, each chunk is radix sorted by
+ * a pool of threads while the next one is read, and written to a temporary
+ * file of raw keys next to the input. The chunk files are mapped in memory
+ * and merged with a loser tree (one comparison per level per record), back
+ * in the place of the input. An input of one chunk is sorted in memory.
+ *
+ * Merge (mergeRuns) : the sorted runs, parts of files (see Segment), are read
+ * by positional reads, one channel per file, and merged with a loser tree.
+ */
+public class KeySort
+{
+    /*
+     * Données :
+     *************************************************************************/
+
+    /** Format des enregistrements d'un run. */
+    public enum Format
+    {
+        /** Lignes de texte, comme Code.print. */
+        TEXT,
+        /** Masques de mots après un en-tête (voir BinaryOutputFile). */
+        BINARY
+    }
+
+    /** Tampon de lecture d'un run, et d'écriture de la sortie. */
+    private static final int BUFFER  = 1 << 20;
+    /** Tampon de lecture d'un run au moins, quand il y en a beaucoup. */
+    private static final int MINIMUM = 1 << 12;
+
+    /*
+     * Méthodes de classe :
+     *************************************************************************/
+
+    /** Trier un fichier, à sa place : texte, ou masques (voir BinaryOutputFile). */
+    public static void sortFile(File file) throws IOException
+    { sortRun(new Segment.Run(file), BinaryOutputFile.isBinary(file) ? Format.BINARY : Format.TEXT); }
+
+    /** Trier un fichier de sortie : entrée sortie. */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 2)
+        {
+            System.out.println("please provide input and output file names");
+            return;
+        }
+        File input = new File(args[0]), output = new File(args[1]);
+        if(!input.getCanonicalFile().equals(output.getCanonicalFile()))
+        {
+            FileChannel from = new FileInputStream(input).getChannel();
+            FileChannel to = new FileOutputStream(output).getChannel();
+            try
+            {
+                for(long position = 0 ; position < from.size() ; )
+                { position += from.transferTo(position, from.size() - position, to); }
+            }
+            finally
+            {
+                from.close();
+                to.close();
+            }
+        }
+        sortFile(output);
+    }
+
+    /**
+     * Trier un run à sa place (l'en-tête d'un run binaire est gardé, son
+     * nombre de codes mis à jour). Un tri à la fois : il prend le quart de
+     * la mémoire et toutes les threads.
+     */
+    public static synchronized void sortRun(Segment.Run run, Format format) throws IOException
+    {
+        long start = run.getOffset() + (format == Format.BINARY ? BinaryOutputFile.HEADER : 0);
+        long end = run.getOffset() + run.getLength();
+        if(end <= start) { return; }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        // Tampons en vol : threads+1 morceaux et threads tampons du tri.
+        long chunk = Math.max(1 << 16, Runtime.getRuntime().maxMemory() / 4 / 8 / (2 * threads + 1));
+        chunk = Math.min(chunk, Math.min(Integer.MAX_VALUE - 8,
+                                         (end - start) / (format == Format.TEXT ? 4 : 8) + 1));
+
+        RandomAccessFile access = new RandomAccessFile(run.getFile(), "rw");
+        try
+        {
+            FileChannel channel = access.getChannel();
+            Source input = source(channel, start, end, format, BUFFER);
+
+            // Un seul morceau : trié en mémoire.
+            long[] keys = new long[(int) chunk];
+            int n = read(input, keys);
+            if(!input.next())
+            {
+                radixSort(keys, n, new long[n]);
+                Sink output = new Sink(channel, start, format);
+                for(int i = 0 ; i < n ; ++i) { output.put(keys[i]); }
+                output.finish(format == Format.BINARY ? run.getOffset() : -1);
+                return;
+            }
+
+            List<File> files = sortChunks(input, keys, n, run.getFile(), threads);
+            try
+            {
+                List<Source> sources = new ArrayList<Source>();
+                for(File file : files) { sources.add(new KeySource(file)); }
+                Sink output = new Sink(channel, start, format);
+                merge(sources, output, Dispatcher.Progress.devNull, 0);
+                output.finish(format == Format.BINARY ? run.getOffset() : -1);
+            }
+            finally
+            {
+                for(File file : files) { file.delete(); }
+            }
+        }
+        finally { access.close(); }
+    }
+
+    /** Fusionner des fichiers triés (un run chacun), supprimés après sauf keep. */
+    public static void mergeFiles(List<File> files, Format format, File outputfile,
+                                  Dispatcher.Progress progress, long max, boolean keep) throws IOException
+    {
+        List<Segment.Run> runs = new ArrayList<Segment.Run>();
+        for(File file : files) { runs.add(new Segment.Run(file)); }
+        mergeRuns(runs, format, outputfile, progress, max, keep);
+    }
+
+    /**
+     * Fusionner des runs triés dans un fichier, leurs fichiers supprimés après
+     * sauf keep.
+     * @param max number of codes, for the progress.
+     */
+    public static void mergeRuns(List<Segment.Run> runs, Format format, File outputfile,
+                                 Dispatcher.Progress progress, long max, boolean keep) throws IOException
+    {
+        Map<File, RandomAccessFile> files = new HashMap<File, RandomAccessFile>();
+        FileOutputStream stream = new FileOutputStream(outputfile);
+        try
+        {
+            // Tampons de lecture dans le quart de la mémoire :
+            int size = (int) Math.max(MINIMUM, Math.min(BUFFER, Runtime.getRuntime().maxMemory() / 4
+                                                                / Math.max(1, runs.size())));
+            List<Source> sources = new ArrayList<Source>();
+            int length = 0;
+            boolean maximal = false;
+            RandomAccessFile access;
+            for(Segment.Run run : runs)
+            {
+                if(run.getLength() == 0) { continue; }
+                access = files.get(run.getFile());
+                if(access == null)
+                {
+                    access = new RandomAccessFile(run.getFile(), "r");
+                    files.put(run.getFile(), access);
+                }
+                long start = run.getOffset();
+                if(format == Format.BINARY)
+                {
+                    // En-tête du run : longueur et codes maximaux.
+                    ByteBuffer header = ByteBuffer.allocate(BinaryOutputFile.HEADER);
+                    Segment.read(access.getChannel(), header, start);
+                    if(header.getInt(0) != BinaryOutputFile.MAGIC)
+                    { throw new IOException(run.getFile() + " : not a binary codes file"); }
+                    length = Math.max(length, header.getInt(4));
+                    maximal |= header.getInt(8) != 0;
+                    start += BinaryOutputFile.HEADER;
+                }
+                sources.add(source(access.getChannel(), start, run.getOffset() + run.getLength(), format, size));
+            }
+
+            Sink output = new Sink(stream.getChannel(), 0, format);
+            if(format == Format.BINARY) { output.header(length, maximal); }
+            merge(sources, output, progress, max);
+            output.finish(format == Format.BINARY ? 0 : -1);
+        }
+        finally
+        {
+            stream.close();
+            for(Map.Entry<File, RandomAccessFile> entry : files.entrySet())
+            {
+                entry.getValue().close();
+                if(!keep) { entry.getKey().delete(); }
+            }
+        }
+    }
+
+    /**
+     * Tri par base des clés [0, n) (comme des longs signés) : 4 passes de 16
+     * bits, celles d'un seul seau étant sautées ; tmp d'au moins n clés.
+     */
+    static void radixSort(long[] keys, int n, long[] tmp)
+    {
+        if(n < 1 << 12)
+        {
+            Arrays.sort(keys, 0, n);
+            return;
+        }
+        int[][] counts = new int[4][1 << 16];
+        long key;
+        for(int i = 0 ; i < n ; ++i)
+        {
+            key = keys[i] ^ Long.MIN_VALUE;
+            ++counts[0][(int) key & 0xFFFF];
+            ++counts[1][(int) (key >>> 16) & 0xFFFF];
+            ++counts[2][(int) (key >>> 32) & 0xFFFF];
+            ++counts[3][(int) (key >>> 48)];
+        }
+
+        long[] from = keys, to = tmp, swap;
+        int[] count;
+        int shift, sum, digit;
+        for(int pass = 0 ; pass < 4 ; ++pass)
+        {
+            shift = 16 * pass;
+            count = counts[pass];
+            if(count[(int) ((from[0] ^ Long.MIN_VALUE) >>> shift) & 0xFFFF] == n) { continue; }
+
+            // Débuts des seaux :
+            sum = 0;
+            for(int b = 0 ; b < count.length ; ++b)
+            {
+                digit = count[b];
+                count[b] = sum;
+                sum += digit;
+            }
+            for(int i = 0 ; i < n ; ++i)
+            {
+                key = from[i];
+                to[count[(int) ((key ^ Long.MIN_VALUE) >>> shift) & 0xFFFF]++] = key;
+            }
+            swap = from;
+            from = to;
+            to = swap;
+        }
+        if(from != keys) { System.arraycopy(from, 0, keys, 0, n); }
+    }
+
+    /*
+     * Méthodes privées :
+     *************************************************************************/
+
+    private static Source source(FileChannel channel, long start, long end, Format format, int size)
+    { return format == Format.TEXT ? new TextSource(channel, start, end, size)
+                                   : new MaskSource(channel, start, end, size); }
+
+    /** Lire les clés suivantes de input (la première déjà lue) : @return leur nombre. */
+    private static int read(Source input, long[] keys) throws IOException
+    {
+        int n = 0;
+        if(!input.next()) { return 0; }
+        keys[n++] = input.key;
+        while(n < keys.length && input.next()) { keys[n++] = input.key; }
+        return n;
+    }
+
+    /**
+     * Trier les morceaux de input en parallèle, le premier déjà lu (n clés
+     * de first, la clé suivante dans input.key).
+     * @return Les fichiers des morceaux triés.
+     */
+    private static List<File> sortChunks(Source input, long[] first, int n, File near, int threads)
+            throws IOException
+    {
+        final BlockingQueue<long[]> free = new ArrayBlockingQueue<long[]>(threads + 1);
+        final ThreadLocal<long[]> tmps = new ThreadLocal<long[]>();
+        final List<File> files = new ArrayList<File>();
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final int size = first.length;
+        try
+        {
+            long[] keys = first;
+            int allocated = 1;
+            boolean more = true;
+            while(more)
+            {
+                // Le morceau : la clé déjà lue, puis les suivantes ; la clé
+                // suivante du premier est déjà lue.
+                if(keys == null)
+                {
+                    keys = free.poll();
+                    if(keys == null && allocated <= threads) { keys = new long[size]; ++allocated; }
+                    if(keys == null) { keys = free.take(); }
+                    keys[0] = input.key;
+                    n = 1;
+                    while(n < size && input.next()) { keys[n++] = input.key; }
+                    more = n == size && input.next();
+                }
+
+                final long[] chunk = keys;
+                final int count = n;
+                final File file = File.createTempFile(near.getName() + ".", ".keys",
+                                                      near.getAbsoluteFile().getParentFile());
+                files.add(file);
+                tasks.add(pool.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws IOException
+                    {
+                        try
+                        {
+                            long[] tmp = tmps.get();
+                            if(tmp == null) { tmp = new long[size]; tmps.set(tmp); }
+                            radixSort(chunk, count, tmp);
+                            KeySource.write(file, chunk, count);
+                        }
+                        finally { free.add(chunk); }
+                        return null;
+                    }
+                }));
+                keys = null;
+            }
+            for(Future<?> task : tasks) { task.get(); }
+        }
+        catch(InterruptedException ex) { throw new IOException(ex); }
+        catch(ExecutionException ex)
+        {
+            if(ex.getCause() instanceof IOException) { throw (IOException) ex.getCause(); }
+            throw new IOException(ex.getCause());
+        }
+        finally { pool.shutdownNow(); }
+        return files;
+    }
+
+    /**
+     * Fusion par arbre des perdants : tree[0] est la source gagnante,
+     * tree[1..k-1] les perdantes des matchs, la feuille de la source s
+     * étant k+s. La source k, virtuelle, gagne tout : elle remplit l'arbre
+     * avant les vraies.
+     */
+    private static void merge(List<Source> list, Sink output, Dispatcher.Progress progress, long max)
+            throws IOException
+    {
+        Source[] sources = list.toArray(new Source[list.size()]);
+        int k = sources.length;
+        if(k == 0) { return; }
+        boolean[] done = new boolean[k + 1];
+        for(int s = 0 ; s < k ; ++s) { done[s] = !sources[s].next(); }
+
+        int[] tree = new int[k];
+        Arrays.fill(tree, k);
+        for(int s = k - 1 ; s >= 0 ; --s) { adjust(tree, sources, done, s); }
+
+        long count = 0;
+        int winner;
+        while(!done[winner = tree[0]])
+        {
+            output.put(sources[winner].key);
+            done[winner] = !sources[winner].next();
+            adjust(tree, sources, done, winner);
+            if((++count & 0xFFFF) == 0 && max > 0)
+            { progress.setValue("Sorting files...", count / (float) max); }
+        }
+    }
+
+    /** Rejouer les matchs de la feuille de s à la racine. */
+    private static void adjust(int[] tree, Source[] sources, boolean[] done, int s)
+    {
+        int k = tree.length, loser;
+        for(int t = (s + k) >> 1 ; t > 0 ; t >>= 1)
+        {
+            loser = tree[t];
+            if(beats(loser, s, sources, done))
+            {
+                tree[t] = s;
+                s = loser;
+            }
+        }
+        tree[0] = s;
+    }
+
+    /** @return true si la source a passe avant la source b. */
+    private static boolean beats(int a, int b, Source[] sources, boolean[] done)
+    {
+        int k = sources.length;
+        if(a == k) { return true; }
+        if(b == k) { return false; }
+        if(done[a]) { return false; }
+        if(done[b]) { return true; }
+        return sources[a].key < sources[b].key;
+    }
+
+    /*
+     * Sources de clés :
+     *************************************************************************/
+
+    /** Clés d'un run, dans l'ordre : next lit la suivante dans key. */
+    private abstract static class Source
+    {
+        long key;
+
+        /** @return false à la fin du run. */
+        abstract boolean next() throws IOException;
+    }
+
+    /** Run lu par morceaux, par lectures positionnelles. */
+    private abstract static class ChannelSource extends Source
+    {
+        private final FileChannel channel;
+        private long              position;
+        private final long        end;
+        protected final ByteBuffer buffer;
+
+        ChannelSource(FileChannel channel_, long start, long end_, int size)
+        {
+            channel = channel_;
+            position = start;
+            end = end_;
+            buffer = ByteBuffer.allocate((int) Math.min(size, Math.max(end - start, 1)));
+            buffer.flip();
+        }
+
+        /** Avoir au moins bytes octets dans le tampon, sauf en fin de run. */
+        protected final void fill(int bytes) throws IOException
+        {
+            if(buffer.remaining() >= bytes || position >= end) { return; }
+            buffer.compact();
+            if(buffer.remaining() > end - position) { buffer.limit(buffer.position() + (int) (end - position)); }
+            int read;
+            while(buffer.hasRemaining() && (read = channel.read(buffer, position)) > 0) { position += read; }
+            if(buffer.hasRemaining() && position < end)
+            { throw new IOException("run beyond the end of its file"); }
+            buffer.flip();
+        }
+    }
+
+    /** Lignes de texte : les mots, séparés par des espaces. */
+    private static final class TextSource extends ChannelSource
+    {
+        /** Valeur des lettres, -1 pour les autres octets. */
+        private static final int[] LETTERS = new int[256];
+        static
+        {
+            Arrays.fill(LETTERS, -1);
+            LETTERS['A'] = 0;
+            LETTERS['C'] = 1;
+            LETTERS['G'] = 2;
+            LETTERS['T'] = 3;
+        }
+
+        TextSource(FileChannel channel, long start, long end, int size)
+        { super(channel, start, end, size); }
+
+        @Override
+        boolean next() throws IOException
+        {
+            fill(OutputFile.LINE);
+            if(!buffer.hasRemaining()) { return false; }
+
+            long words = 0;
+            int word, separator = buffer.get(buffer.position());
+            if(separator == '\n') { buffer.get(); }
+            while(separator != '\n')
+            {
+                if(buffer.remaining() < 3) { throw new IOException("not a code line"); }
+                word = LETTERS[buffer.get() & 0xFF] << 4 | LETTERS[buffer.get() & 0xFF] << 2
+                       | LETTERS[buffer.get() & 0xFF];
+                if(word < 0) { throw new IOException("not a code line"); }
+                words |= 1L << word;
+                // Fin de ligne, ou fin du run sans fin de ligne :
+                separator = buffer.hasRemaining() ? buffer.get() : '\n';
+                if(separator != ' ' && separator != '\n') { throw new IOException("not a code line"); }
+            }
+            key = Code.sortKey(words);
+            return true;
+        }
+    }
+
+    /** Masques de mots, big endian. */
+    private static final class MaskSource extends ChannelSource
+    {
+        MaskSource(FileChannel channel, long start, long end, int size)
+        { super(channel, start, end, size); }
+
+        @Override
+        boolean next() throws IOException
+        {
+            fill(8);
+            if(buffer.remaining() < 8) { return false; }
+            key = Code.sortKey(buffer.getLong());
+            return true;
+        }
+    }
+
+    /** Morceau trié : fichier temporaire des clés, lu en mémoire mappée. */
+    private static final class KeySource extends Source
+    {
+        private final LongBuffer keys;
+
+        KeySource(File file) throws IOException
+        {
+            RandomAccessFile access = new RandomAccessFile(file, "r");
+            try
+            {
+                keys = access.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, access.length())
+                             .order(ByteOrder.nativeOrder()).asLongBuffer();
+            }
+            finally { access.close(); }
+        }
+
+        @Override
+        boolean next()
+        {
+            if(!keys.hasRemaining()) { return false; }
+            key = keys.get();
+            return true;
+        }
+
+        /** Écrire les n premières clés dans le fichier, par la mémoire mappée. */
+        static void write(File file, long[] chunk, int n) throws IOException
+        {
+            RandomAccessFile access = new RandomAccessFile(file, "rw");
+            try
+            {
+                access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 8L * n)
+                      .order(ByteOrder.nativeOrder()).asLongBuffer().put(chunk, 0, n);
+            }
+            finally { access.close(); }
+        }
+    }
+
+    /*
+     * Sortie : les enregistrements des clés, au format du run :
+     *************************************************************************/
+    private static final class Sink
+    {
+        private final FileChannel channel;
+        private final Format      format;
+        private final ByteBuffer  buffer;
+        private long              position;
+        private long              count;
+
+        /** Écrire à partir de position. */
+        Sink(FileChannel channel_, long position_, Format format_)
+        {
+            channel = channel_;
+            position = position_;
+            format = format_;
+            buffer = ByteBuffer.allocate(BUFFER);
+        }
+
+        /** En-tête d'un fichier binaire, son nombre de codes écrit par finish. */
+        void header(int length, boolean maximal)
+        {
+            buffer.putInt(BinaryOutputFile.MAGIC).putInt(length).putInt(maximal ? 1 : 0).putInt(0).putLong(0);
+        }
+
+        void put(long key) throws IOException
+        {
+            if(buffer.remaining() < OutputFile.LINE) { flush(); }
+            if(format == Format.TEXT)
+            { buffer.position(OutputFile.format(Code.wordsOfKey(key), buffer.array(), buffer.position())); }
+            else
+            { buffer.putLong(Code.wordsOfKey(key)); }
+            ++count;
+        }
+
+        /** @param header début de l'en-tête binaire à compléter, -1 sans. */
+        void finish(long header) throws IOException
+        {
+            flush();
+            if(header >= 0)
+            {
+                ByteBuffer bytes = ByteBuffer.allocate(8);
+                bytes.putLong(0, count);
+                Segment.write(channel, bytes, header + BinaryOutputFile.HEADER - 8);
+            }
+        }
+
+        private void flush() throws IOException
+        {
+            buffer.flip();
+            Segment.write(channel, buffer, position);
+            position += buffer.limit();
+            buffer.clear();
+        }
+    }
+}
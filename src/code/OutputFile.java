@@ -1,15 +1,24 @@
 package code;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import logic.Code;
 
 /**
  * Permet d'écrire dans un fichier
+ *
+ * Une seule thread écrit dans un fichier (le compteur de sa partition) : les
+ * lignes sont formées sans verrou ni allocation, dans le tampon du fichier.
+ *
+ * Les codes sont gardés en clés de tri (voir Code.sortKey) tant qu'il y en a
+ * moins de KEYS, et écrits triés à la fermeture : le fichier n'est pas relu.
+ * Au-delà, ils sont écrits au fil de l'eau et le fichier est trié à la
+ * fermeture.
  */
 public class OutputFile
 {
@@ -24,41 +33,92 @@ public class OutputFile
             // do nothing
         }
 
+        @Override
+        public void writeWords(long words)
+        {
+            // do nothing
+        }
+
         @Override
         public void close()
         {
             // do nothing
         }
     };
-    private final BufferedWriter output;
-    private final File file;
 
-    public OutputFile(File file)
+    /** Lettres des mots : 3 octets par mot (6 bits), à 3*mot. */
+    private static final byte[] LETTERS = new byte[64 * 3];
+    static
     {
-        try
-        {
-            this.file = file;
-            output = new BufferedWriter(new FileWriter(file));
-        } catch (IOException ex)
+        for (int word = 0; word < 64; ++word)
         {
-            Logger.getLogger(OutputFile.class.getName()).
-                    log(Level.SEVERE, null, ex);
-            throw new RuntimeException(ex);
+            for (int i = 0; i < 3; ++i)
+            { LETTERS[3 * word + i] = (byte) "ACGT".charAt(word >> (4 - 2 * i) & 3); }
         }
     }
 
-    private OutputFile()
+    /** Taille du tampon ; une ligne fait au plus 64*4 octets. */
+    private static final int BUFFER = 1 << 16;
+    static final int LINE           = 64 * 4;
+    /**
+     * Nombre de codes d'une sortie gardés en mémoire au plus : une sortie
+     * ouverte par thread, dans le quart de la mémoire (comme KeySort.sortRun).
+     */
+    private static final int KEYS   = (int) Math.max(1024, Math.min(Integer.MAX_VALUE - 8,
+            Runtime.getRuntime().maxMemory() / 4 / 8 / Runtime.getRuntime().availableProcessors()));
+
+    // Fichier seul, ou segments d'une sortie (voir Segment) :
+    private final File file;
+    private final Segment.Pool pool;
+    private Segment segment;
+    private OutputStream output;
+    // Run écrit et trié, à la fermeture :
+    private Segment.Run run;
+    protected final byte[] buffer;
+    protected int position;
+    // Clés des codes, null quand ils sont écrits au fil de l'eau :
+    private long[] keys;
+    private int nbKeys;
+
+    public OutputFile(File file)
+    { this(file, null); }
+
+    /**
+     * Sortie dans un segment du pool, pris au premier code par la thread qui
+     * écrit, et rendu à la fermeture avec le run de la sortie.
+     */
+    public OutputFile(Segment.Pool pool)
+    { this(null, pool); }
+
+    protected OutputFile(File file, Segment.Pool pool)
     {
-        output = null;
-        file = null;
+        this.file = file;
+        this.pool = pool;
+        buffer = file == null && pool == null ? null : new byte[BUFFER];
+        keys = buffer == null ? null : new long[1024];
     }
 
-    public synchronized void writeCode(Code code)
+    private OutputFile()
+    { this(null, null); }
+
+    /** @return Le run écrit et trié, null avant la fermeture ou sans code. */
+    public Segment.Run getRun() { return run; }
+
+    public void writeCode(Code code)
+    { writeWords(code.getWords()); }
+
+    /** Écrire le code d'un masque de mots (voir Code.getWords). */
+    public void writeWords(long words)
     {
+        if (keys != null && (nbKeys < keys.length || grow()))
+        {
+            keys[nbKeys++] = Code.sortKey(words);
+            return;
+        }
         try
         {
-            code.print(output);
-            output.append('\n');
+            if (keys != null) { spill(); }
+            put(words);
         } catch (IOException ex)
         {
             Logger.getLogger(OutputFile.class.getName()).
@@ -66,16 +126,120 @@ public class OutputFile
         }
     }
 
+    /**
+     * Écrire les codes en mémoire, triés, puis trier ce qui a été écrit au
+     * fil de l'eau : le fichier, ou le run dans son segment.
+     */
     public void close()
     {
+        Segment.Run written = null;
         try
         {
-            output.close();
-            ExternalSort.sortFile(file);
+            boolean sorted = keys != null;
+            if (sorted)
+            {
+                Arrays.sort(keys, 0, nbKeys);
+                for (int i = 0; i < nbKeys; ++i) { put(Code.wordsOfKey(keys[i])); }
+                keys = null;
+            }
+
+            // Aucun code : pas de run dans un segment.
+            if (output == null && pool != null) { return; }
+            reserve(0);
+            flush();
+            if (segment != null) { written = segment.finish(); }
+            else
+            {
+                output.close();
+                written = new Segment.Run(file);
+            }
+            if (!sorted) { sort(written); }
+            run = written;
         } catch (IOException ex)
         {
             Logger.getLogger(OutputFile.class.getName()).
                     log(Level.SEVERE, null, ex);
+        } finally
+        {
+            if (segment != null) { pool.release(segment, run); }
+            segment = null;
+        }
+    }
+
+    /** Écrire une ligne : les mots dans l'ordre croissant, comme Code.print. */
+    protected void put(long words) throws IOException
+    {
+        reserve(LINE);
+        position = format(words, buffer, position);
+    }
+
+    /**
+     * Écrire la ligne d'un masque de mots à at : au plus LINE octets.
+     * @return La fin de la ligne.
+     */
+    static int format(long words, byte[] buffer, int at)
+    {
+        int start = at, word;
+        for (; words != 0; words &= words - 1)
+        {
+            word = 3 * Long.numberOfTrailingZeros(words);
+            buffer[at]     = LETTERS[word];
+            buffer[at + 1] = LETTERS[word + 1];
+            buffer[at + 2] = LETTERS[word + 2];
+            buffer[at + 3] = ' ';
+            at += 4;
+        }
+        // Le dernier espace devient la fin de ligne :
+        if (at > start) { --at; }
+        buffer[at++] = '\n';
+        return at;
+    }
+
+    /** @return Nombre de codes gardés en mémoire, écrits triés à la fermeture. */
+    protected int getKept() { return keys == null ? 0 : nbKeys; }
+
+    /** Trier les lignes du run écrit. */
+    protected void sort(Segment.Run written) throws IOException
+    { KeySort.sortRun(written, KeySort.Format.TEXT); }
+
+    /** Début de la sortie, écrit dans le tampon à l'ouverture (rien en texte). */
+    protected void begin() { }
+
+    /** Ouvrir la sortie au besoin, et faire de la place pour bytes octets. */
+    protected final void reserve(int bytes) throws IOException
+    {
+        if (output == null)
+        {
+            if (pool != null)
+            {
+                segment = pool.acquire();
+                output = segment.append();
+            }
+            else { output = new FileOutputStream(file); }
+            begin();
         }
+        if (position > BUFFER - bytes) { flush(); }
+    }
+
+    /** Plus de place pour les clés : false au-delà de KEYS. */
+    private boolean grow()
+    {
+        if (keys.length >= KEYS) { return false; }
+        keys = Arrays.copyOf(keys, Math.min(KEYS, 2 * keys.length));
+        return true;
+    }
+
+    /** Trop de codes : écrire ceux en mémoire, et les suivants au fil de l'eau. */
+    private void spill() throws IOException
+    {
+        long[] kept = keys;
+        keys = null;
+        for (int i = 0; i < nbKeys; ++i) { put(Code.wordsOfKey(kept[i])); }
+    }
+
+    private void flush() throws IOException
+    {
+        output.write(buffer, 0, position);
+        position = 0;
     }
 }
@@ -0,0 +1,203 @@
+package code;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import logic.Symmetry;
+
+/**
+ * Process counting the ranges leased by a Coordinator, with local
+ * ThreadedWorkers : a dispatcher per range (see Dispatcher.setRange). The
+ * counts are sent back at the end of each range, with the codes if the
+ * coordinator writes an output file (see Coordinator for the protocol).
+ */
+public class RemoteWorker
+{
+    /*
+     * Données :
+     *************************************************************************/
+
+    // Paramètres locaux :
+    private final int        nbThreads;
+    private final int        nbPartitions;
+    private final boolean    isUsingBitEngine;
+
+    // Paramètres de l'exécution, envoyés par le coordinateur :
+    private int              longueur;
+    private boolean          isGrowing;
+    private boolean          isCountingMax;
+    private Symmetry         symmetry;
+    private boolean          isWritingRepresentatives;
+    private boolean          isSendingCodes;
+
+    // Connexion :
+    private Writer           output;
+
+    // Résultats des plages comptées :
+    private long             circularCount;
+    private long             maximalCount;
+    private long             ranges;
+
+    /*
+     * Constructeur :
+     *************************************************************************/
+    public RemoteWorker(int nbThreads_, int nbPartitions_, boolean isUsingBitEngine_)
+    {
+        nbThreads = nbThreads_;
+        nbPartitions = nbPartitions_;
+        isUsingBitEngine = isUsingBitEngine_;
+    }
+
+    /*
+     * Méthodes :
+     *************************************************************************/
+
+    /** Compter les plages du coordinateur jusqu'à ce qu'il n'y en ait plus. */
+    public void run(String host, int port) throws IOException
+    {
+        Socket socket = new Socket(host, port);
+        Thread heartbeat = null;
+        try
+        {
+            BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            output = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "US-ASCII"));
+
+            String[] run = read(input).split(" ");
+            if(run.length != 7 || !run[0].equals("RUN"))
+            { throw new IOException("not a coordinator : " + run[0]); }
+            longueur = Integer.parseInt(run[1]);
+            isGrowing = Boolean.parseBoolean(run[2]);
+            isCountingMax = Boolean.parseBoolean(run[3]);
+            symmetry = Symmetry.valueOf(run[4]);
+            isWritingRepresentatives = Boolean.parseBoolean(run[5]);
+            isSendingCodes = Boolean.parseBoolean(run[6]);
+
+            // Signe de vie pendant le comptage :
+            heartbeat = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        while(true)
+                        {
+                            Thread.sleep(Coordinator.HEARTBEAT);
+                            send("ALIVE");
+                        }
+                    }
+                    catch(InterruptedException ex) { }
+                    catch(IOException ex)
+                    { Logger.getLogger(RemoteWorker.class.getName()).log(Level.WARNING, null, ex); }
+                }
+            });
+            heartbeat.setDaemon(true);
+            heartbeat.start();
+
+            String[] reply;
+            while(true)
+            {
+                send("JOB");
+                reply = read(input).split(" ");
+                if(reply[0].equals("END")) { break; }
+                if(reply[0].equals("WAIT"))
+                {
+                    try { Thread.sleep(1000); }
+                    catch(InterruptedException ex)
+                    { Logger.getLogger(RemoteWorker.class.getName()).log(Level.SEVERE, null, ex); }
+                    continue;
+                }
+                if(!reply[0].equals("RANGE") || reply.length != 4)
+                { throw new IOException("unexpected message : " + reply[0]); }
+                count(reply[1], Long.parseLong(reply[2]), Long.parseLong(reply[3]));
+            }
+        }
+        finally
+        {
+            if(heartbeat != null) { heartbeat.interrupt(); }
+            socket.close();
+        }
+    }
+
+    public int getLongueur() { return longueur; }
+
+    /** @return Nombre de codes circulaires des plages comptées. */
+    public long getCircularCount() { return circularCount; }
+
+    public long getMaximalCount() { return maximalCount; }
+
+    /** @return Nombre de plages comptées. */
+    public long getRanges() { return ranges; }
+
+    /*
+     * Méthodes privées :
+     *************************************************************************/
+
+    /** Compter la plage [start, end] et en envoyer les résultats. */
+    private void count(String id, long start, long end) throws IOException
+    {
+        File file = isSendingCodes ? File.createTempFile("remote.", ".txt") : null;
+        Dispatcher dispatcher = new Dispatcher(longueur, nbPartitions, isCountingMax,
+                                               isUsingBitEngine, Dispatcher.Progress.devNull, file);
+        dispatcher.setSymmetry(symmetry, isWritingRepresentatives);
+        dispatcher.setGrowth(isGrowing);
+        dispatcher.setRange(start, end);
+        for(int i = 0 ; i < nbThreads ; ++i)
+        { dispatcher.add(new ThreadedWorker(dispatcher)); }
+        dispatcher.launch();
+
+        // Codes triés par la fusion du dispatcher :
+        if(file != null)
+        {
+            BufferedReader codes = new BufferedReader(new FileReader(file));
+            try
+            {
+                String line;
+                synchronized(this)
+                {
+                    while((line = codes.readLine()) != null)
+                    { output.write("CODE " + line + "\n"); }
+                }
+            }
+            finally
+            {
+                codes.close();
+                file.delete();
+            }
+        }
+
+        StringBuilder done = new StringBuilder("DONE ");
+        done.append(id).append(' ').append(dispatcher.getCircularCount())
+            .append(' ').append(dispatcher.getMaximalCount())
+            .append(' ').append(dispatcher.getGenerated());
+        for(long count : dispatcher.getCircularCounts()) { done.append(' ').append(count); }
+        for(long count : dispatcher.getMaximalCounts()) { done.append(' ').append(count); }
+        send(done.toString());
+
+        circularCount += dispatcher.getCircularCount();
+        maximalCount += dispatcher.getMaximalCount();
+        ++ranges;
+    }
+
+    private synchronized void send(String message) throws IOException
+    {
+        output.write(message);
+        output.write('\n');
+        output.flush();
+    }
+
+    private static String read(BufferedReader input) throws IOException
+    {
+        String line = input.readLine();
+        if(line == null) { throw new IOException("connection closed by the coordinator"); }
+        return line;
+    }
+}
@@ -0,0 +1,208 @@
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only file holding the sorted outputs (runs) of several partitions,
+ * one after the other : a worker writes in one segment at a time, instead of
+ * a temporary file per partition. The index of the runs, {file, offset,
+ * length}, is kept by the Pool (and by the Journal for a resume) ; the final
+ * merge reads the runs through one channel per segment (see KeySort).
+ */
+public class Segment
+{
+    /*
+     * Données :
+     *************************************************************************/
+
+    private final File             file;
+    private final RandomAccessFile access;
+    private final FileChannel      channel;
+    // Fin du dernier run fini, et début du run en cours :
+    private long                   end;
+    private long                   start;
+    private long                   position;
+
+    /*
+     * Constructeur :
+     *************************************************************************/
+    Segment(File file_) throws IOException
+    {
+        file = file_;
+        access = new RandomAccessFile(file, "rw");
+        channel = access.getChannel();
+    }
+
+    /*
+     * Méthodes :
+     *************************************************************************/
+
+    public File getFile() { return file; }
+
+    /** Commencer un run à la fin du segment : ses octets, dans l'ordre. */
+    OutputStream append()
+    {
+        start = position = end;
+        return new OutputStream()
+        {
+            @Override
+            public void write(int b) throws IOException
+            { write(new byte[] { (byte) b }, 0, 1); }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException
+            {
+                ByteBuffer bytes = ByteBuffer.wrap(b, off, len);
+                while(bytes.hasRemaining()) { position += channel.write(bytes, position); }
+            }
+        };
+    }
+
+    /** @return Le run écrit depuis append. */
+    Run finish()
+    {
+        end = position;
+        return new Run(file, start, end - start);
+    }
+
+    void close() throws IOException { access.close(); }
+
+    /*
+     * Méthodes de classe :
+     *************************************************************************/
+
+    /** Écrire sur le disque les octets et la taille du fichier. */
+    static void force(File file) throws IOException
+    {
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try { access.getChannel().force(true); }
+        finally { access.close(); }
+    }
+
+    static void read(FileChannel channel, ByteBuffer bytes, long position) throws IOException
+    {
+        while(bytes.hasRemaining())
+        {
+            if(channel.read(bytes, position + bytes.position()) < 0)
+            { throw new IOException("run beyond the end of its file"); }
+        }
+    }
+
+    static void write(FileChannel channel, ByteBuffer bytes, long position) throws IOException
+    {
+        while(bytes.hasRemaining()) { channel.write(bytes, position + bytes.position()); }
+    }
+
+    /*
+     * Run : la sortie triée d'une partition, dans un segment ou seule dans
+     * un fichier :
+     *************************************************************************/
+    public static class Run
+    {
+        private final File file;
+        private final long offset;
+        private final long length;
+
+        public Run(File file_, long offset_, long length_)
+        {
+            file = file_;
+            offset = offset_;
+            length = length_;
+        }
+
+        /** Tout un fichier. */
+        public Run(File file_) { this(file_, 0, file_.length()); }
+
+        public File getFile() { return file; }
+
+        public long getOffset() { return offset; }
+
+        public long getLength() { return length; }
+
+        /** @return false si le fichier a disparu ou a été tronqué. */
+        public boolean exists() { return file.exists() && file.length() >= offset + length; }
+    }
+
+    /*
+     * Segments d'une sortie : un segment libre par worker qui écrit :
+     *************************************************************************/
+    public static class Pool
+    {
+        private final File                output;
+        private final List<Segment>       segments;
+        private final LinkedList<Segment> free;
+        private final List<Run>           runs;
+
+        /** Segments à côté du fichier de sortie. */
+        public Pool(File output_)
+        {
+            output = output_;
+            segments = new ArrayList<Segment>();
+            free = new LinkedList<Segment>();
+            runs = new ArrayList<Run>();
+        }
+
+        /** Un segment libre, créé si aucun. */
+        synchronized Segment acquire() throws IOException
+        {
+            if(!free.isEmpty()) { return free.removeFirst(); }
+            Segment segment = new Segment(File.createTempFile(output.getName() + ".", "",
+                                                              output.getAbsoluteFile().getParentFile()));
+            segments.add(segment);
+            return segment;
+        }
+
+        /** Rendre le segment, avec le run fini (null si aucun). */
+        synchronized void release(Segment segment, Run run)
+        {
+            if(run != null) { runs.add(run); }
+            free.addFirst(segment);
+        }
+
+        /** Ajouter un run écrit ailleurs. */
+        public synchronized void add(Run run) { runs.add(run); }
+
+        /** @return Les runs finis, à fusionner. */
+        public synchronized List<Run> getRuns() { return new ArrayList<Run>(runs); }
+
+        /**
+         * Écrire sur le disque les fichiers donnés : par le canal de leur
+         * segment, ou en les ouvrant (runs écrits ailleurs).
+         */
+        public void force(Collection<File> files) throws IOException
+        {
+            Set<File> others = new HashSet<File>(files);
+            synchronized(this)
+            {
+                for(Segment segment : segments)
+                { if(others.remove(segment.file)) { segment.channel.force(true); } }
+            }
+            for(File file : others) { Segment.force(file); }
+        }
+
+        /** @return Nombre de segments créés. */
+        public synchronized int size() { return segments.size(); }
+
+        /** Fermer les segments, à la fin du calcul ; ceux sans run sont supprimés. */
+        public synchronized void close() throws IOException
+        {
+            for(Segment segment : segments)
+            {
+                segment.close();
+                if(segment.end == 0) { segment.file.delete(); }
+            }
+            free.clear();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package code;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs split in shards : process i of n only counts the i-th slice of the
+ * index space (see range), and writes its counts in a file next to its
+ * output. The main method merges the shards : it sums the counts and merges
+ * the sorted output files.
+ *
+ * Counts file, one "key values" line per item :
+ *
+ *     shard i n
+ *     run length growth max symmetry representatives
+ *     circular N
+ *     maximal N
+ *     generated N
+ *     lengths c1 .. cL
+ *     maximals m1 .. mL
+ *     output file        ("-" if none)
+ */
+public class Shards
+{
+    /*
+     * Méthodes de classe :
+     *************************************************************************/
+
+    /** @return Bornes {début, fin} du shard (de 0 à nbShards-1) sur total index. */
+    public static long[] range(long total, int shard, int nbShards)
+    {
+        return new long[] { total / nbShards * shard + Math.min(shard, total % nbShards),
+                            total / nbShards * (shard + 1) + Math.min(shard + 1, total % nbShards) - 1 };
+    }
+
+    /**
+     * @return Fichier des comptes d'un shard : à côté de sa sortie, ou
+     *         shard-i-n.counts sans sortie.
+     */
+    public static File countsFile(File output, int shard, int nbShards)
+    {
+        return new File(output != null ? output.getPath() + ".counts"
+                                       : "shard-" + shard + "-" + nbShards + ".counts");
+    }
+
+    /** Écrire les comptes du shard, à la fin du calcul du dispatcher. */
+    public static void writeCounts(File file, Dispatcher dispatcher, int shard, int nbShards) throws IOException
+    {
+        BufferedWriter output = new BufferedWriter(new FileWriter(file));
+        try
+        {
+            output.write("shard " + shard + " " + nbShards + "\n");
+            output.write(run(dispatcher.getLongueur(), dispatcher.isGrowing(), dispatcher.isCountingMax(),
+                             dispatcher.getSymmetry().toString(), dispatcher.isWritingRepresentatives()) + "\n");
+            output.write("circular " + dispatcher.getCircularCount() + "\n");
+            output.write("maximal " + dispatcher.getMaximalCount() + "\n");
+            output.write("generated " + dispatcher.getGenerated() + "\n");
+            output.write("lengths" + join(dispatcher.getCircularCounts()) + "\n");
+            output.write("maximals" + join(dispatcher.getMaximalCounts()) + "\n");
+            output.write("output " + (dispatcher.getOutputFile() == null ? "-"
+                                      : dispatcher.getOutputFile().getAbsolutePath()) + "\n");
+        }
+        finally { output.close(); }
+    }
+
+    /**
+     * Fusion des shards : [--partial] [--output file] counts files. Les
+     * sorties des shards sont gardées ; binaires, la fusion l'est aussi. Un
+     * shard manquant est une erreur (status 1, rien n'est fusionné), sauf
+     * avec --partial.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        File output = null;
+        boolean partial = false;
+        List<File> counts = new ArrayList<File>();
+        for(int i = 0 ; i < args.length ; ++i)
+        {
+            if(args[i].equals("--output") && i + 1 < args.length) { output = new File(args[++i]); }
+            else if(args[i].equals("--partial")) { partial = true; }
+            else { counts.add(new File(args[i])); }
+        }
+        if(counts.isEmpty())
+        {
+            System.err.println("usage : Shards [--partial] [--output file] shard.counts ...");
+            return;
+        }
+
+        // Sommes des comptes :
+        String run = null;
+        int nbShards = 0;
+        long circular = 0, maximal = 0, generated = 0;
+        long[] circulars = null, maximals = null;
+        boolean[] seen = null;
+        List<File> outputs = new ArrayList<File>();
+        String[] shard;
+        for(File file : counts)
+        {
+            List<String[]> lines = read(file);
+            shard = lines.get(0);
+            if(run == null)
+            {
+                run = join(lines.get(1));
+                nbShards = Integer.parseInt(shard[2]);
+                circulars = new long[Integer.parseInt(lines.get(1)[1])];
+                maximals = new long[circulars.length];
+                seen = new boolean[nbShards];
+            }
+            else if(!run.equals(join(lines.get(1))) || nbShards != Integer.parseInt(shard[2]))
+            { throw new IOException(file + " : not a shard of the same run"); }
+            if(seen[Integer.parseInt(shard[1])])
+            { throw new IOException(file + " : shard " + shard[1] + " already merged"); }
+            seen[Integer.parseInt(shard[1])] = true;
+
+            circular += Long.parseLong(lines.get(2)[1]);
+            maximal += Long.parseLong(lines.get(3)[1]);
+            generated += Long.parseLong(lines.get(4)[1]);
+            for(int i = 0 ; i < circulars.length ; ++i)
+            {
+                circulars[i] += Long.parseLong(lines.get(5)[i + 1]);
+                maximals[i] += Long.parseLong(lines.get(6)[i + 1]);
+            }
+            if(!lines.get(7)[1].equals("-")) { outputs.add(new File(lines.get(7)[1])); }
+        }
+
+        boolean missing = false;
+        for(int i = 0 ; i < nbShards ; ++i)
+        {
+            if(!seen[i]) { System.err.println("Missing shard " + i + "/" + nbShards); }
+            missing |= !seen[i];
+        }
+        if(missing && !partial)
+        {
+            System.err.println("Incomplete run : nothing merged (--partial to merge the shards given)");
+            System.exit(1);
+        }
+        if(output != null && outputs.isEmpty())
+        {
+            System.err.println("Output : no shard wrote an output file");
+            System.exit(1);
+        }
+        System.out.println("Generated: " + generated);
+        System.out.println("Circular codes: " + circular);
+        System.out.println("Maximals: " + maximal);
+        for(int i = 0 ; i < circulars.length ; ++i)
+        { System.out.println((i + 1) + "\t: " + circulars[i] + "\t" + maximals[i]); }
+
+        // Fusion des sorties triées :
+        if(output != null)
+        {
+            KeySort.Format format = !outputs.isEmpty() && BinaryOutputFile.isBinary(outputs.get(0))
+                                    ? KeySort.Format.BINARY : KeySort.Format.TEXT;
+            KeySort.mergeFiles(outputs, format, output, Dispatcher.Progress.devNull, circular, true);
+        }
+    }
+
+    /*
+     * Méthodes privées :
+     *************************************************************************/
+
+    private static String run(int length, boolean growth, boolean max, String symmetry, boolean representatives)
+    { return "run " + length + " " + growth + " " + max + " " + symmetry + " " + representatives; }
+
+    private static String join(long[] values)
+    {
+        StringBuilder result = new StringBuilder();
+        for(long value : values) { result.append(' ').append(value); }
+        return result.toString();
+    }
+
+    private static String join(String[] values)
+    {
+        StringBuilder result = new StringBuilder();
+        for(String value : values) { result.append(value).append(' '); }
+        return result.toString();
+    }
+
+    /** Lignes d'un fichier de comptes, coupées aux espaces (la sortie entière). */
+    private static List<String[]> read(File file) throws IOException
+    {
+        List<String[]> result = new ArrayList<String[]>();
+        BufferedReader input = new BufferedReader(new FileReader(file));
+        try
+        {
+            String line;
+            while((line = input.readLine()) != null)
+            { result.add(line.startsWith("output ") ? line.split(" ", 2) : line.split(" ")); }
+        }
+        finally { input.close(); }
+        if(result.size() != 8 || !result.get(0)[0].equals("shard") || !result.get(1)[0].equals("run"))
+        { throw new IOException(file + " : not a counts file"); }
+        return result;
+    }
+}
@@ -2,8 +2,14 @@ package code;
 
 import code.Dispatcher.Worker;
 import logic.Counter;
+import logic.Statistics;
 
-public class ThreadedWorker extends Thread implements Worker
+/**
+ * Worker comptant ses partitions dans son propre thread. Quand des workers
+ * attendent du travail, il leur donne la fin de sa plage en cours, à partir
+ * d'un sous-arbre qu'il n'a pas encore commencé (voir Counter.Splitter).
+ */
+public class ThreadedWorker extends Thread implements Worker, Counter.Splitter
 {
 	/*
 	 * Données :
@@ -17,11 +23,10 @@ public class ThreadedWorker extends Thread implements Worker
 	private long       startIndex;
 	private long       endIndex;
 	
-	// Données à transmettre :
-	private long       circularCount;
-	private long       maximalCount;
-	private long       generated;
-	private long       count;
+	// Données à transmettre (lues par les autres threads pendant le calcul) :
+	private final WorkerCounters counters;
+	private long[]     circularCounts;
+	private long[]     maximalCounts;
 	private OutputFile outputFile;
 
 	/*
@@ -31,12 +36,13 @@ public class ThreadedWorker extends Thread implements Worker
 	{
 		// Initialisations :
 		dispatcher    = dispatcher_;
-		circularCount = 0;
-		maximalCount  = 0;
-		generated     = 0;
-		count         = 0;
+		counters      = new WorkerCounters();
+		circularCounts = new long[dispatcher.getLongueur()];
+		maximalCounts  = new long[dispatcher.getLongueur()];
 
-		counter = new Counter(dispatcher.getLongueur());
+		counter = new Counter(dispatcher.getLongueur(), dispatcher.isUsingBitEngine());
+		counter.setStatistics(dispatcher.isCountingStatistics());
+		counter.setSplitter(this);
 	}
 	
 	/*
@@ -45,17 +51,25 @@ public class ThreadedWorker extends Thread implements Worker
 	@Override
 	public void run()
 	{
+		counter.setSymmetry(dispatcher.getSymmetry(), dispatcher.isWritingRepresentatives());
+
 		// Demander une partition de travail :
 		dispatcher.nextJob(this);
 
 		while(startIndex<=endIndex)
 		{
-			counter.count(startIndex, endIndex, outputFile, dispatcher.isCountingMax());
-			
-			circularCount += counter.getCircularCount();
-			maximalCount  += counter.getMaximalCount();
-			generated     += counter.getGenerated();
-			count         += endIndex - startIndex + 1;
+			if(dispatcher.isGrowing())
+			{ counter.grow(startIndex, endIndex, outputFile, dispatcher.isCountingMax()); }
+			else
+			{ counter.count(startIndex, endIndex, outputFile, dispatcher.isCountingMax()); }
+			dispatcher.rangeDone(startIndex, endIndex, counter, outputFile);
+
+			for(int i = 0 ; i < circularCounts.length ; ++i)
+			{
+				circularCounts[i] += counter.getCircularCounts()[i];
+				maximalCounts[i]  += counter.getMaximalCounts()[i];
+			}
+			counters.add(counter);
 			
 			// Demander la prochaine partition de travail :
 			dispatcher.nextJob(this);
@@ -74,21 +88,46 @@ public class ThreadedWorker extends Thread implements Worker
 	}
 
 	@Override
-	public long getCircularCount() { return circularCount; }
+	public long getCircularCount() { return counters.getCircularCount(); }
 	
 	@Override
-	public long getMaximalCount() { return maximalCount; }
+	public long getMaximalCount() { return counters.getMaximalCount(); }
+
+	@Override
+	public long[] getTotals() { return counters.read(); }
 
 	@Override
-	public long getGenerated() { return generated; }
+	public long[] getCircularCounts() { return circularCounts; }
+
+	@Override
+	public long[] getMaximalCounts() { return maximalCounts; }
+
+	@Override
+	public Statistics getStatistics() { return counter.getStatistics(); }
+
+	@Override
+	public long getGenerated() { return counters.getGenerated(); }
 
 	/**
-	 * Retourne le nombre de codes testées jusqu'a présent.
-	 * count + les éléments générés actuellement.
+	 * Retourne le nombre d'index traités jusqu'a présent, sous-arbres
+	 * élagués compris : avance régulièrement pendant une partition.
 	 */
 	@Override
 	public long getCount()
-	{ return count + (startIndex<=endIndex ? counter.getGenerated() : 0)  ;}
+	{ return counter.getIndexesDone(); }
+
+	/*
+	 * Méthode interface Counter.Splitter :
+	 *************************************************************************/
+	@Override
+	public boolean isWanted() { return dispatcher.isSplitWanted(); }
+
+	@Override
+	public void give(long startIndex_, long endIndex_)
+	{
+		endIndex = startIndex_ - 1;
+		dispatcher.give(startIndex_, endIndex_);
+	}
 
 	/*
 	public void stop()
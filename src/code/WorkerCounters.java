@@ -0,0 +1,79 @@
+package code;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import logic.Counter;
+
+/**
+ * Counts of the ranges finished by a worker : written by its thread only,
+ * read by the others (Dispatcher.snapshot) while it runs.
+ *
+ * The counts are padded on both sides, so the counters of two workers never
+ * share a cache line, and published with release stores (lazySet). A
+ * sequence number, odd while the worker writes, lets a reader get the counts
+ * of the same ranges.
+ */
+public final class WorkerCounters
+{
+    /*
+     * Données :
+     *************************************************************************/
+
+    // 8 longs : une ligne de cache avant et après les compteurs.
+    private static final int PAD       = 8;
+    private static final int SEQUENCE  = PAD;
+    private static final int CIRCULAR  = PAD + 1;
+    private static final int MAXIMAL   = PAD + 2;
+    private static final int GENERATED = PAD + 3;
+    private static final int RANGES    = PAD + 4;
+
+    private final AtomicLongArray values = new AtomicLongArray(RANGES + 1 + PAD);
+
+    /*
+     * Méthodes :
+     *************************************************************************/
+
+    /** Ajouter les résultats du dernier appel du compteur. Thread du worker seulement. */
+    public void add(Counter counter)
+    { add(counter.getCircularCount(), counter.getMaximalCount(), counter.getGenerated()); }
+
+    /** Ajouter les résultats d'une plage. Thread du worker seulement. */
+    public void add(long circular, long maximal, long generated)
+    {
+        long sequence = values.get(SEQUENCE);
+        values.set(SEQUENCE, sequence + 1);
+        values.lazySet(CIRCULAR, values.get(CIRCULAR) + circular);
+        values.lazySet(MAXIMAL, values.get(MAXIMAL) + maximal);
+        values.lazySet(GENERATED, values.get(GENERATED) + generated);
+        values.lazySet(RANGES, values.get(RANGES) + 1);
+        values.lazySet(SEQUENCE, sequence + 2);
+    }
+
+    /**
+     * @return {circular, maximal, generated, ranges} : the counts of the same
+     *         finished ranges.
+     */
+    public long[] read()
+    {
+        long[] result = new long[4];
+        long sequence;
+        do
+        {
+            sequence = values.get(SEQUENCE);
+            result[0] = values.get(CIRCULAR);
+            result[1] = values.get(MAXIMAL);
+            result[2] = values.get(GENERATED);
+            result[3] = values.get(RANGES);
+        } while((sequence & 1) != 0 || sequence != values.get(SEQUENCE));
+        return result;
+    }
+
+    public long getCircularCount() { return values.get(CIRCULAR); }
+
+    public long getMaximalCount() { return values.get(MAXIMAL); }
+
+    public long getGenerated() { return values.get(GENERATED); }
+
+    /** @return Nombre de plages finies. */
+    public long getRanges() { return values.get(RANGES); }
+}
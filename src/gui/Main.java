@@ -2,10 +2,18 @@ package gui;
 
 import java.awt.Toolkit;
 import java.io.File;
+import java.io.IOException;
+import code.Coordinator;
+import code.CostModel;
 import code.Dispatcher;
 import code.Dispatcher.Finish;
 import code.Dispatcher.Progress;
+import code.ForkJoinWorker;
+import code.Journal;
+import code.RemoteWorker;
+import code.Shards;
 import code.ThreadedWorker;
+import logic.Symmetry;
 
 public class Main extends javax.swing.JFrame
 {
@@ -13,6 +21,17 @@ public class Main extends javax.swing.JFrame
 
     /* ********************************************************************* */
     private File file;
+    private Symmetry symmetry = Symmetry.NONE;
+    private boolean representatives;
+    private boolean binary;
+    private boolean statistics;
+    private boolean forkJoin;
+    private File costDirectory;
+    private File journalFile;
+    private boolean resume;
+    private int port = -1;
+    private int shard;
+    private int nbShards;
     private Dispatcher dispatcher;
     private long startTime;
     private long stopTime;
@@ -25,12 +44,17 @@ public class Main extends javax.swing.JFrame
     public static void main(String args[])
     {
         File file = null;
+        Symmetry symmetry = Symmetry.NONE;
+        File costDirectory = null;
+        File journalFile = null;
+        String connect = null;
+        int port = -1, shard = 0, nbShards = 0;
         // En ligne de commande
         if(args.length > 0)
         {
             // Déclarations :
             int len, thr, parts;
-            boolean max=false, silent=false;
+            boolean max=false, silent=false, bitset=false, representatives=false, binary=false, growth=false, stats=false, forkjoin=false, resume=false;
             Progress progress;
 
             // Récupération des données :
@@ -44,6 +68,82 @@ public class Main extends javax.swing.JFrame
                 { max=true; }
                 else if( args[i].equals("--silent") )
                 { silent=true; }
+                else if( args[i].equals("--bitset") )
+                { bitset=true; }
+                else if( args[i].equals("--growth") )
+                { growth=true; }
+                else if( args[i].equals("--stats") )
+                { stats=true; }
+                else if( args[i].equals("--forkjoin") )
+                { forkjoin=true; }
+                else if( args[i].equals("--binary") )
+                { binary=true; }
+                else if( args[i].equals("--representatives") )
+                { representatives=true; }
+                else if( args[i].equals("--symmetry") )
+                {
+                    ++i;
+                    try
+                    { symmetry = Symmetry.valueOf(i<args.length ? args[i].toUpperCase() : ""); }
+                    catch(IllegalArgumentException ex)
+                    {
+                        System.err.println(" Symmetry : none|complement|letters|full !");
+                        return;
+                    }
+                }
+                else if( args[i].equals("--cost") )
+                {
+                    ++i;
+                    if(i<args.length)
+                    { costDirectory = new File(args[i]); }
+                    else
+                    { System.err.println(" Cost : no directory !");}
+                }
+                else if( args[i].equals("--journal") || args[i].equals("--resume") )
+                {
+                    resume = args[i].equals("--resume");
+                    ++i;
+                    if(i<args.length)
+                    { journalFile = new File(args[i]); }
+                    else
+                    { System.err.println(" Journal : no file !");}
+                }
+                else if( args[i].equals("--shard") )
+                {
+                    ++i;
+                    if(i<args.length && args[i].matches("[0-9]+/[0-9]+"))
+                    {
+                        shard = Integer.parseInt(args[i].substring(0, args[i].indexOf('/')));
+                        nbShards = Integer.parseInt(args[i].substring(args[i].indexOf('/') + 1));
+                    }
+                    if(nbShards == 0 || shard >= nbShards)
+                    {
+                        System.err.println(" Shard : i/n with 0 <= i < n !");
+                        return;
+                    }
+                }
+                else if( args[i].equals("--serve") )
+                {
+                    ++i;
+                    if(i<args.length && args[i].matches("[0-9]{1,5}") && Integer.parseInt(args[i]) <= 65535)
+                    { port = Integer.parseInt(args[i]); }
+                    else
+                    {
+                        System.err.println(" Serve : port from 0 to 65535 !");
+                        return;
+                    }
+                }
+                else if( args[i].equals("--connect") )
+                {
+                    ++i;
+                    if(i<args.length && args[i].matches(".+:[0-9]{1,5}"))
+                    { connect = args[i]; }
+                    else
+                    {
+                        System.err.println(" Connect : host:port !");
+                        return;
+                    }
+                }
                 else if( args[i].equals("--output") )
                 {
                     ++i;
@@ -57,7 +157,43 @@ public class Main extends javax.swing.JFrame
                     System.err.println(args[i]+" bad argument");
                     System.err.println(" --max    : count maximal");
                     System.err.println(" --silent : silent mode");
+                    System.err.println(" --bitset : bitset engine");
+                    System.err.println(" --growth : count all lengths from 1 to length");
+                    System.err.println(" --stats  : print the search tree counters per length");
+                    System.err.println(" --forkjoin : threads split their partition when others are idle");
+                    System.err.println(" --cost dir : partitions of equal estimated cost, estimates kept in dir");
+                    System.err.println(" --journal file : record the counted ranges in file (missing or empty)");
+                    System.err.println(" --resume file : continue the run recorded in file (same arguments)");
+                    System.err.println(" --shard i/n : count the i-th of n slices, counts written in <output>.counts");
+                    System.err.println(" --serve port : lease the partitions to remote workers instead of counting");
+                    System.err.println(" --connect host:port : count the partitions of a coordinator (length ignored)");
+                    System.err.println(" --symmetry none|complement|letters|full : visit orbit representatives only");
+                    System.err.println(" --representatives : write orbit representatives only");
+                    System.err.println(" --binary : write the codes as 64 bits word masks (see BinaryOutputFile)");
+                }
+            }
+
+            // Worker distant : les paramètres viennent du coordinateur.
+            if(connect != null)
+            {
+                RemoteWorker remote = new RemoteWorker(thr, parts, bitset);
+                try
+                {
+                    remote.run(connect.substring(0, connect.lastIndexOf(':')),
+                               Integer.parseInt(connect.substring(connect.lastIndexOf(':') + 1)));
                 }
+                catch(IOException ex)
+                { System.err.println(" Connect : " + ex.getMessage()); }
+                System.out.println("Ranges: " + remote.getRanges());
+                System.out.println("Circular codes: " + remote.getCircularCount());
+                return;
+            }
+
+            // Les compteurs de l'arbre restent sur les workers distants :
+            if(port >= 0 && stats)
+            {
+                System.err.println(" Serve : --stats not available, the counters stay on the remote workers");
+                return;
             }
 
             // Création objet :
@@ -77,7 +213,10 @@ public class Main extends javax.swing.JFrame
                 progress = new Progress()
                 {
                     public void setValue(String subject, float value)
-                    { System.out.println(subject + " " + Math.round(value * 100) + "%"); }
+                    {
+                        System.out.println(subject + " " + Math.round(value * 100) + "%"
+                                           + formatRate(main.dispatcher, subject));
+                    }
                 };
             }
 
@@ -91,13 +230,37 @@ public class Main extends javax.swing.JFrame
                     System.out.println("Circular codes: "+ dispatcher.getCircularCount());
                     if(dispatcher.isCountingMax())
                     { System.out.println("Maximals: "+dispatcher.getMaximalCount()); }
+                    if(dispatcher.isGrowing())
+                    { System.out.print(formatGrowth(dispatcher)); }
+                    if(dispatcher.isCountingStatistics())
+                    {
+                        try { dispatcher.getStatistics().print(System.out); }
+                        catch(IOException e) { e.printStackTrace(); }
+                    }
                     System.out.println(formatDuration(main.stopTime - main.startTime));
+                    if(main.nbShards > 0)
+                    {
+                        File counts = Shards.countsFile(dispatcher.getOutputFile(), main.shard, main.nbShards);
+                        try { Shards.writeCounts(counts, dispatcher, main.shard, main.nbShards); }
+                        catch(IOException e) { e.printStackTrace(); }
+                    }
                 }
             };
 
             // Lancement du calcul :
             main.file = file;
-            main.start(progress, finish, max, len, thr, parts);
+            main.symmetry = symmetry;
+            main.representatives = representatives;
+            main.binary = binary;
+            main.statistics = stats;
+            main.forkJoin = forkjoin;
+            main.costDirectory = costDirectory;
+            main.journalFile = journalFile;
+            main.resume = resume;
+            main.port = port;
+            main.shard = shard;
+            main.nbShards = nbShards;
+            main.start(progress, finish, max, bitset, growth, len, thr, parts);
         }
         // Par interface graphique
         else
@@ -134,7 +297,7 @@ public class Main extends javax.swing.JFrame
                 public void setValue(String subject, float value)
                 {
                     int percent = Math.round(value * 100);
-                    progressBar.setString(subject + " " + percent + "%");
+                    progressBar.setString(subject + " " + percent + "%" + formatRate(dispatcher, subject));
                     progressBar.setValue(percent);
                 }
             };
@@ -152,6 +315,8 @@ public class Main extends javax.swing.JFrame
                         text.append("Circular codes\t: ").append(result.getCircularCount()).append("\n");
                         if(result.isCountingMax())
                         { text.append("Maximal\t: ").append(result.getMaximalCount()).append("\n"); }
+                        if(result.isGrowing())
+                        { text.append(formatGrowth(result)); }
                         runningTime.setText(formatDuration(stopTime - startTime));
                     } else
                     {
@@ -172,7 +337,7 @@ public class Main extends javax.swing.JFrame
             resultsField.setText(text.toString());
             start.setText("Cancel");
 
-            start(progress, finish, maximaux.isSelected(), len, thr, parts);
+            start(progress, finish, maximaux.isSelected(), false, croissance.isSelected(), len, thr, parts);
         }
         else
         { dispatcher.kill(); }
@@ -216,19 +381,96 @@ public class Main extends javax.swing.JFrame
     /**
      * Lancement du calcul
      */
-    private void start(Progress progress, Finish finish, boolean max, int len, int thr, int parts)
+    private void start(Progress progress, Finish finish, boolean max, boolean bitset, boolean growth, int len, int thr, int parts)
     {
         startTime = System.currentTimeMillis();
 
         // Création et lancement des workers et du dispatcher :
-        dispatcher = new Dispatcher(len, parts, max, progress, file);
-        for (int i = 0; i < thr; ++i)
-        { dispatcher.add(new ThreadedWorker(dispatcher)); }
+        dispatcher = new Dispatcher(len, parts, max, bitset, progress, file);
+        dispatcher.setSymmetry(symmetry, representatives);
+        dispatcher.setBinaryOutput(binary);
+        dispatcher.setGrowth(growth);
+        dispatcher.setStatistics(statistics);
+        long[] range = { 0, dispatcher.getTotal() - 1 };
+        if(nbShards > 0)
+        {
+            range = Shards.range(dispatcher.getTotal(), shard, nbShards);
+            dispatcher.setRange(range[0], range[1]);
+        }
+        if(costDirectory != null && !growth)
+        {
+            // Estimations faites sans symétrie : partitions guidées sinon.
+            if(symmetry != Symmetry.NONE)
+            { System.err.println(" Cost : ignored with --symmetry"); }
+            else
+            { dispatcher.setCostModel(CostModel.load(costDirectory, len, bitset)); }
+        }
+        if(journalFile != null)
+        {
+            try
+            {
+                dispatcher.setJournal(new Journal(journalFile, len, growth, max, symmetry,
+                                                  representatives, range[0], range[1], binary,
+                                                  resume));
+            }
+            catch(IOException ex)
+            {
+                System.err.println(ex.getMessage());
+                return;
+            }
+        }
+        if(port >= 0)
+        {
+            try { dispatcher.add(new Coordinator(dispatcher, port)); }
+            catch(IOException ex)
+            {
+                System.err.println(" Serve : " + ex.getMessage());
+                return;
+            }
+        }
+        else if(forkJoin)
+        { dispatcher.add(new ForkJoinWorker(dispatcher, thr)); }
+        else
+        {
+            for (int i = 0; i < thr; ++i)
+            { dispatcher.add(new ThreadedWorker(dispatcher)); }
+        }
         dispatcher.threadedLaunch(finish);
     }
 
     /* ********************************************************************* */
 
+    /**
+     * Fonction de croissance : une ligne par longueur, avec le nombre de
+     * codes circulaires (et maximaux si comptés).
+     */
+    public static String formatGrowth(Dispatcher dispatcher)
+    {
+        StringBuilder text = new StringBuilder();
+        long[] circular = dispatcher.getCircularCounts();
+        long[] maximal = dispatcher.getMaximalCounts();
+        for(int i = 0 ; i < circular.length ; ++i)
+        {
+            text.append(i + 1).append("\t: ").append(circular[i]);
+            if(dispatcher.isCountingMax())
+            { text.append("\t").append(maximal[i]); }
+            text.append("\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Débit de la dernière vue de l'avancement (voir Dispatcher.snapshot),
+     * pendant le calcul seulement : vide sinon.
+     */
+    public static String formatRate(Dispatcher dispatcher, String subject)
+    {
+        if(dispatcher == null || !subject.equals("Computing...")) { return ""; }
+        Dispatcher.Snapshot snapshot = dispatcher.getLastSnapshot();
+        if(snapshot == null) { return ""; }
+        return String.format(" (%.1f M/s)", snapshot.getRate() / 1e6);
+    }
+
     public static String formatDuration(long time) 
     {
         //long ms = time % 1000;
@@ -250,6 +492,7 @@ public class Main extends javax.swing.JFrame
     private javax.swing.JLabel jLabel2;
     private javax.swing.JLabel jLabel3;
     private javax.swing.JLabel jLabel4;
+    private javax.swing.JLabel jLabel5;
     private javax.swing.JLabel jLabel8;
     private javax.swing.JPanel jPanel1;
     private javax.swing.JPanel jPanel2;
@@ -257,6 +500,7 @@ public class Main extends javax.swing.JFrame
     private javax.swing.JScrollPane jScrollPane2;
     private javax.swing.JSpinner longueur;
     private javax.swing.JCheckBox maximaux;
+    private javax.swing.JCheckBox croissance;
     private javax.swing.JSpinner nbPartitions;
     private javax.swing.JSpinner nbThreads;
     private javax.swing.JLabel outputFileLabel;
@@ -282,6 +526,8 @@ public class Main extends javax.swing.JFrame
         jLabel4 = new javax.swing.JLabel();
         longueur = new javax.swing.JSpinner();
         maximaux = new javax.swing.JCheckBox();
+        jLabel5 = new javax.swing.JLabel();
+        croissance = new javax.swing.JCheckBox();
         start = new javax.swing.JButton();
         progressBar = new javax.swing.JProgressBar();
         jScrollPane1 = new javax.swing.JScrollPane();
@@ -313,6 +559,8 @@ public class Main extends javax.swing.JFrame
 
         jLabel4.setText("Maximal");
 
+        jLabel5.setText("Growth");
+
         longueur.setModel(new javax.swing.SpinnerNumberModel(2, 1, 20, 1));
 
         start.setText("Count");
@@ -340,10 +588,12 @@ public class Main extends javax.swing.JFrame
                         .addGroup(jPanel1Layout.createSequentialGroup()
                             .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                                 .addComponent(jLabel4)
+                                .addComponent(jLabel5)
                                 .addComponent(jLabel1))
                             .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                             .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                                 .addComponent(maximaux)
+                                .addComponent(croissance)
                                 .addComponent(longueur, javax.swing.GroupLayout.PREFERRED_SIZE, 108, javax.swing.GroupLayout.PREFERRED_SIZE)))
                         .addComponent(progressBar, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, 202, Short.MAX_VALUE)
                         .addComponent(start, javax.swing.GroupLayout.DEFAULT_SIZE, 202, Short.MAX_VALUE)
@@ -361,6 +611,10 @@ public class Main extends javax.swing.JFrame
                     .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING)
                         .addComponent(jLabel4)
                         .addComponent(maximaux))
+                    .addGap(6, 6, 6)
+                    .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING)
+                        .addComponent(jLabel5)
+                        .addComponent(croissance))
                     .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                     .addComponent(start)
                     .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -0,0 +1,311 @@
+package logic;
+
+/**
+ * Bitset engine for trinucleotide codes.
+ *
+ * The code is stored as a 64 bits word mask (bit w set if the word w is in
+ * the code). Necklaces are tested over the graph of the letters : the letter
+ * l1 leads to the letter l2 if there is a diletter d with l1.d and d.l2 in the
+ * code. A closed necklace is a cycle in this 4 vertices graph, stored as a
+ * 4x4 bit matrix in an int (row l at bits 4*l..4*l+3). The LDCCN tests are
+ * then lookups in tables indexed by the 65536 possible graphs.
+ *
+ * The graph is built incrementally, one per depth of the stack : adding the
+ * word a.d = p.c only adds edges from a (to the letters following the
+ * diletter d) and to c (from the letters preceding the diletter p), which are
+ * 4 bits slices of the word mask.
+ *
+ * The stack inherited from Code is still used for the enumeration order.
+ *
+ * When the candidates are tracked, each depth of the stack also keeps the set
+ * of the words that can still be added to the code while keeping it circular.
+ * As a code which is not circular stays not circular when growing, the set of
+ * a depth is the set of the previous one without the class pushed, and a
+ * circular code of full length is maximal exactly when its set is empty.
+ * The sets are filtered lazily : testMax stops at the first word which can
+ * still be added, and each word found dead is removed from the sets of the
+ * lower depths where it is dead too, so it is never tested again in their
+ * subtrees.
+ */
+public class BitCode extends Code
+{
+    /*
+     * Class's data :
+     * ***********************************************************************/
+
+    /** Bits 0, 16, 32 and 48 : one bit per letter slice of the word mask. */
+    private static final long   SPREAD   = 0x0001000100010001L;
+    /** Diagonal of a 4x4 bit matrix. */
+    private static final int    DIAGONAL = 0x8421;
+    /** Words of the table (the 60 non periodic trinucleotides). */
+    private static final long   ALL_WORDS;
+    /** Words of each class (its 3 permutations). */
+    private static final long[] CLASS_WORDS = new long[20];
+    /** Word of each rank (3*class + permutation). */
+    private static final int[]  RANK_WORDS = new int[60];
+    /** Column of a 4x4 bit matrix from a 4 bits mask : bit l to bit 4*l. */
+    private static final int[]  COLUMN = new int[16];
+    /** Bit g set if the letters graph g has no cycle (5-LDCCN). */
+    private static final long[] NO_CYCLE = new long[1 << 10];
+    /** Bit g set if the letters graph g has no cycle of 2 letters (3-LDCCN). */
+    private static final long[] NO_CYCLE_2 = new long[1 << 10];
+    /** Bit g set if the letters graph g has no cycle of 2 or 3 letters (4-LDCCN). */
+    private static final long[] NO_CYCLE_3 = new long[1 << 10];
+    static
+    {
+        long all = 0;
+        for(int classe = 0 ; classe < 20 ; ++classe)
+        {
+            for(int rang = 0 ; rang < 3 ; ++rang)
+            {
+                RANK_WORDS[3 * classe + rang] = Trinucleotide.getWord(Trinucleotide.get(classe, rang));
+                CLASS_WORDS[classe] |= 1L << RANK_WORDS[3 * classe + rang];
+            }
+            all |= CLASS_WORDS[classe];
+        }
+        ALL_WORDS = all;
+
+        for(int mask = 0 ; mask < 16 ; ++mask)
+        {
+            for(int l = 0 ; l < 4 ; ++l)
+            { if((mask >>> l & 1) != 0) { COLUMN[mask] |= 1 << (l << 2); } }
+        }
+
+        // With 4 letters, a cycle has at most 4 letters : look at the
+        // diagonal of the powers of the graph up to 4.
+        int g2, g3, g4;
+        for(int g = 0 ; g < 1 << 16 ; ++g)
+        {
+            g2 = product(g, g);
+            g3 = product(g2, g);
+            g4 = product(g3, g);
+            if((g2 & DIAGONAL) == 0)
+            { NO_CYCLE_2[g >>> 6] |= 1L << g; }
+            if(((g2 | g3) & DIAGONAL) == 0)
+            { NO_CYCLE_3[g >>> 6] |= 1L << g; }
+            if(((g | g2 | g3 | g4) & DIAGONAL) == 0)
+            { NO_CYCLE[g >>> 6] |= 1L << g; }
+        }
+    }
+
+    /** Words of the code : bit w set if w is in the code. */
+    private long         words;
+    /** Classes of the code : bit c set if the class c is in the code. */
+    private int          classes;
+    /** Letters graph of the code, per depth of the stack. */
+    private final int[]  graphs;
+    /** Words that can still be added, per depth of the stack. */
+    private final long[] candidates;
+    /** Maintain the candidates on push (only useful for maximal codes). */
+    private boolean      tracking;
+
+    /*
+     * Constructor :
+     * ***********************************************************************/
+
+    /** Constructor : take as parameter the length of the code. */
+    public BitCode(int length)
+    {
+        super(length);
+        graphs = new int[length];
+        candidates = new long[length];
+    }
+
+    /**
+     * Maintain the words that can still be added on each push, so testMax
+     * only has to check the remaining ones.
+     */
+    @Override
+    public void trackCandidates(boolean tracking_) { tracking = tracking_; }
+
+    /*
+     * Code manipulation :
+     * ***********************************************************************/
+
+    @Override
+    public void push(int elem)
+    {
+        int word = Trinucleotide.getWord(elem);
+        int classe = Trinucleotide.getClass(elem);
+        graphs[index + 1] = graphWith(index == -1 ? 0 : graphs[index], words, word);
+        if(tracking)
+        {
+            candidates[index + 1] = (index == -1 ? ALL_WORDS : candidates[index])
+                                    & ~CLASS_WORDS[classe];
+        }
+        ++index;
+        stack[index] = elem;
+        words |= 1L << word;
+        classes |= 1 << classe;
+    }
+
+    @Override
+    public int pop()
+    {
+        int elem = stack[index];
+        --index;
+        words &= ~(1L << Trinucleotide.getWord(elem));
+        classes &= ~(1 << Trinucleotide.getClass(elem));
+        return elem;
+    }
+
+    @Override
+    public void clear()
+    {
+        index = -1;
+        words = 0;
+        classes = 0;
+    }
+
+    /*
+     * Basic tests :
+     * ***********************************************************************/
+
+    @Override
+    public long getWords() { return words; }
+
+    @Override
+    public boolean has(int elem) { return (words >>> elem & 1L) != 0; }
+
+    @Override
+    public boolean hasPrefix(int elem) { return (words >>> (elem << 2) & 0xFL) != 0; }
+
+    @Override
+    public boolean hasClass(int class_) { return (classes >>> class_ & 1) != 0; }
+
+    /*
+     * Circularity tests :
+     * ***********************************************************************/
+
+    @Override
+    public boolean testCircularity() { return isCircular(graphs[index]); }
+
+    @Override
+    public boolean testMax()
+    {
+        long remaining = tracking ? candidates[index] : ALL_WORDS & ~classWords(classes);
+        int g = graphs[index];
+        int word;
+
+        while(remaining != 0)
+        {
+            word = Long.numberOfTrailingZeros(remaining);
+            if(isCircular(graphWith(g, words, word)))
+            { return false; }
+            if(tracking)
+            { discard(word); }
+            remaining &= remaining - 1;
+        }
+        return true;
+    }
+
+    /** Each word only costs a graph update and a lookup, nothing is pushed. */
+    @Override
+    public long circularNext(long ranks)
+    {
+        int g = index == -1 ? 0 : graphs[index];
+        long result = 0;
+        int rank;
+        for(long remaining = ranks ; remaining != 0 ; remaining &= remaining - 1)
+        {
+            rank = Long.numberOfTrailingZeros(remaining);
+            if(isCircular(graphWith(g, words, RANK_WORDS[rank])))
+            { result |= 1L << rank; }
+        }
+        return result;
+    }
+
+    /** 3-LDCCN : no cycle of 2 letters. */
+    @Override
+    public boolean TestAndBuildMatrix() { return lookup(NO_CYCLE_2, graphs[index]); }
+
+    /** 4-LDCCN : no cycle of 2 or 3 letters. */
+    @Override
+    public boolean Test_4LDCCN_AndBuildMatrix() { return lookup(NO_CYCLE_3, graphs[index]); }
+
+    /** 5-LDCCN : no cycle at all. */
+    @Override
+    public boolean Test_5LDCCN_AndBuildMatrix() { return testCircularity(); }
+
+    /*
+     * Candidates :
+     * ***********************************************************************/
+
+    /**
+     * Remove a word that can not be added to the current code from the
+     * candidates of the current depth, and of the lower depths while it can
+     * not be added to them either.
+     */
+    private void discard(int word)
+    {
+        long mask = 1L << word;
+        long lower = words;
+
+        candidates[index] &= ~mask;
+        for(int depth = index - 1 ; depth >= 0 ; --depth)
+        {
+            lower &= ~(1L << Trinucleotide.getWord(stack[depth + 1]));
+            if(isCircular(graphWith(graphs[depth], lower, word)))
+            { return; }
+            candidates[depth] &= ~mask;
+        }
+    }
+
+    /*
+     * Letters graph :
+     * ***********************************************************************/
+
+    /**
+     * Letters graph g of the code (words) with one more word a.d = p.c : the
+     * letter a leads to the letters following d, and the letters preceding p
+     * lead to c.
+     */
+    private static int graphWith(int g, long words, int word)
+    {
+        int after = (int) (words >>> (Trinucleotide.getSuffixe(word) << 2) & 0xFL);
+        long before = words >>> Trinucleotide.getPrefixe(word) & SPREAD;
+        before = (before | before >>> 15 | before >>> 30 | before >>> 45) & 0xFL;
+        return g | after << (Trinucleotide.getLettre1(word) << 2)
+                 | COLUMN[(int) before] << Trinucleotide.getLettre3(word);
+    }
+
+    /*
+     * Class's methods :
+     * ***********************************************************************/
+
+    /** Words of the classes in the mask. */
+    private static long classWords(int classMask)
+    {
+        long result = 0;
+        while(classMask != 0)
+        {
+            result |= CLASS_WORDS[Integer.numberOfTrailingZeros(classMask)];
+            classMask &= classMask - 1;
+        }
+        return result;
+    }
+
+    /** Boolean product of two 4x4 bit matrices. */
+    private static int product(int a, int b)
+    {
+        int result = 0, row, l;
+        for(int l1 = 0 ; l1 < 4 ; ++l1)
+        {
+            row = a >>> (l1 << 2) & 0xF;
+            while(row != 0)
+            {
+                l = Integer.numberOfTrailingZeros(row);
+                result |= (b >>> (l << 2) & 0xF) << (l1 << 2);
+                row &= row - 1;
+            }
+        }
+        return result;
+    }
+
+    /** A code is circular if its letters graph has no cycle. */
+    private static boolean isCircular(int g) { return lookup(NO_CYCLE, g); }
+
+    /** Read the bit of the graph g in a table. */
+    private static boolean lookup(long[] table, int g)
+    { return (table[g >>> 6] >>> g & 1L) != 0; }
+}
@@ -0,0 +1,167 @@
+package logic;
+
+/**
+ * Selection of the orbit representatives of the codes under a symmetry group.
+ *
+ * A code is a 60 bits mask of word ranks (see Symmetry). Codes of the same
+ * length are compared as their sorted sequences of ranks, that is : X < Y if
+ * the lowest rank of the symmetric difference is in X. The representative of
+ * an orbit is its smallest code.
+ *
+ * As the codes are built by increasing classes, the prefix P of a code is the
+ * part of the code up to the class of its top, ranks up to R. For every
+ * element g of the group, g(P) is a part of g(code), the other words of g(code)
+ * being the images of the next words. Let b be the lowest rank, up to R, of
+ * the difference between P and g(P) :
+ *  - if b is in g(P), g(code) is smaller than the code, whatever the next
+ *    words are, and the subtree can be cut ;
+ *  - if b is in P and g maps no rank above R below b, the code is smaller
+ *    than g(code) whatever the next words are, and g is not looked at in the
+ *    subtree anymore.
+ *
+ * The images of the prefixes and the elements still to look at are kept per
+ * depth of the stack, so each push only adds one word to each of them.
+ */
+public class Canonical
+{
+    /*
+     * Data :
+     *************************************************************************/
+
+    private final Symmetry symmetry;
+    private final int      order;
+
+    /** Ranks of the code, per depth. */
+    private final long[]   codes;
+    /** images[depth][g] : ranks of the image of the code by g, per depth. */
+    private final long[][] images;
+    /** Elements of the group still to look at, per depth. */
+    private final long[]   actives;
+
+    /*
+     * Constructor :
+     *************************************************************************/
+
+    public Canonical(Symmetry symmetry_, int length)
+    {
+        symmetry = symmetry_;
+        order = symmetry.order();
+        codes = new long[length];
+        images = new long[length][order];
+        actives = new long[length];
+    }
+
+    /*
+     * Access :
+     *************************************************************************/
+
+    public Symmetry getSymmetry() { return symmetry; }
+
+    /** @return Ranks of the image of the code by g. */
+    public long image(Code code, int g)
+    {
+        long result = 0;
+        for(int i = 0 ; i < code.length() ; ++i)
+        { result |= 1L << symmetry.image(g, Trinucleotide.getRank(code.item(i))); }
+        return result;
+    }
+
+    /*
+     * Tests :
+     *************************************************************************/
+
+    /**
+     * Rebuild the images of all depths, after the code has been set without
+     * testPrefix (Code.makeAt).
+     */
+    public void reset(Code code)
+    {
+        for(int depth = 0 ; depth < code.length() ; ++depth)
+        { update(code, depth, false); }
+    }
+
+    /**
+     * Update the images for the top of the code and test if the code may be
+     * the prefix of a representative. MUST be call after each push, unless
+     * the push is followed by orbitSize.
+     */
+    public boolean testPrefix(Code code)
+    { return update(code, code.length() - 1, true); }
+
+    /**
+     * Update the images for the top of a full length code.
+     *
+     * @return 0 if the code is not the representative of its orbit, the size
+     *         of the orbit otherwise.
+     */
+    public int orbitSize(Code code)
+    {
+        if(!testPrefix(code)) { return 0; }
+        return orbit(code);
+    }
+
+    /**
+     * Size of the orbit of the code, taken as a full code, after testPrefix
+     * returned true for it.
+     */
+    public int orbit(Code code)
+    {
+        int depth = code.length() - 1;
+
+        // The code is full : an element still active either gives the same
+        // code or a bigger one.
+        long ranks = codes[depth];
+        long active = actives[depth];
+        int stabilizer = 1;
+        while(active != 0)
+        {
+            if(images[depth][Long.numberOfTrailingZeros(active)] == ranks)
+            { ++stabilizer; }
+            active &= active - 1;
+        }
+        return order / stabilizer;
+    }
+
+    /**
+     * Images of the depth from the ones of the previous depth.
+     *
+     * @param stop stop at the first image proved smaller, leaving the depth
+     *             incomplete (it will be popped).
+     * @return false if an image is proved smaller than the code.
+     */
+    private boolean update(Code code, int depth, boolean stop)
+    {
+        int rank = Trinucleotide.getRank(code.item(depth));
+        int last = 3 * Trinucleotide.getClass(code.item(depth)) + 2;
+        long below = (2L << last) - 1;
+        long prefix = (depth == 0 ? 0 : codes[depth - 1]) | 1L << rank;
+        long active = depth == 0 ? ((1L << order) - 1) & ~1L : actives[depth - 1];
+        long[] previous = depth == 0 ? null : images[depth - 1];
+        long[] current = images[depth];
+        long[] masks = symmetry.imageMasks(rank);
+        long[] limits = symmetry.limitMasks(last);
+        long image, difference;
+        boolean result = true;
+        int g;
+
+        codes[depth] = prefix;
+        actives[depth] = active;
+        while(active != 0)
+        {
+            g = Long.numberOfTrailingZeros(active);
+            active &= active - 1;
+
+            image = (depth == 0 ? 0 : previous[g]) | masks[g];
+            current[g] = image;
+            difference = Long.lowestOneBit(prefix ^ (image & below));
+            if((difference & image) != 0)
+            {
+                if(stop) { return false; }
+                result = false;
+            }
+            else if(difference != 0 && difference < limits[g])
+            { actives[depth] &= ~(1L << g); }
+        }
+        return result;
+    }
+}
@@ -1,7 +1,6 @@
 package logic;
 
 import java.io.IOException;
-import java.util.Arrays;
 
 import logic.Trinucleotide;
 
@@ -12,17 +11,15 @@ public class Code
      * ***********************************************************************/
 
     /** Stack of trinucleotides : size = length+1 (+1 is for maximal test). */
-    private int[]     stack;
+    protected int[]   stack;
     /** Array for constant time prefixes tests : size = 4*4 = 16. */
     private int[]     prefixes;
     /** Array for constant time trinucleotides tests : size = 4*4*4 = 64. */
     private int[]     items;
-    /** Matrix for testing codes : size=[length+1]^2(+1 is for max test). */
-    private int[][]   matrix;
     /** Current index in the stack ; empty stack -> index = -1. */
-    private int       index;
+    protected int     index;
     /** Length of the code. */
-    private final int length;
+    protected final int length;
 
     /*
      * Méthode de construction :
@@ -38,21 +35,22 @@ public class Code
         // Allocate memory (set up to 0 by default)
         prefixes = new int[16];
         items = new int[64];
-        matrix = new int[length + 1][length + 1];
     }
 
     /**
-     * Set the code with appropriate trinucleotides, base on an index. It also
-     * complete the matrix used for circularity tests.
+     * Set the code with appropriate trinucleotides, base on an index. The
+     * numbers of cases are read in the binomials and pow3 tables, so it costs
+     * one pass over the classes, without division nor allocation.
      */
     public void makeAt(long index_number)
     {
         // Valeurs temporaires :
         long casPossibles = 0;
+        long parRang;
         int etape;
         int classe = 0;
         int rang = 0;
-        long coef = (long) Math.pow(3, length);
+        long coef;
 
         // Réinitialisation :
         clear();
@@ -71,8 +69,9 @@ public class Code
             // -> -classe : ne pas prendre en compte les classes passées
             // Si l'index est plus grand que le nombre de cas possibles,
             // c'est que la classe courante n'est pas la bonne,
-            casPossibles = combinaison(length - etape, 19 - classe);
-            casPossibles *= coef;
+            // Chaque cas a 3^(longueurCode-etape+1) rangs possibles.
+            coef = pow3[length - etape + 1];
+            casPossibles = binomials[19 - classe][length - etape] * coef;
 
             // < index_number+1 -> casPossibles = quantité [1..], index [0..]
             while(casPossibles <= index_number)
@@ -82,8 +81,7 @@ public class Code
                 ++classe;
                 index_number -= casPossibles;
                 // Réévalutation :
-                casPossibles = combinaison(length - etape, 19 - classe);
-                casPossibles *= coef;
+                casPossibles = binomials[19 - classe][length - etape] * coef;
             }
 
             // 2) On a la bonne classe, il faut trouver le rang :
@@ -91,22 +89,142 @@ public class Code
             // et on a dans « casPossibles » les 3 rangs de la classe courante
             // ayant chacun autant de possibilités :
             // Obtenir le nombre de cas possibles par rang :
-            casPossibles /= 3;
+            parRang = binomials[19 - classe][length - etape] * pow3[length - etape];
             // Trouver dans quel rang se situe l'index :
-            // Note : casPossibles [1..N] et index[0..N-1] -> rang [0,1,2]
-            rang = (int) (index_number / casPossibles);
+            // Note : parRang [1..N] et index[0..N-1] -> rang [0,1,2]
+            rang = index_number < parRang ? 0 : index_number < 2 * parRang ? 1 : 2;
 
             // 3) Création du code :
             push(Trinucleotide.get(classe, rang));
-            buildMatrix();
 
             // 4) Ajustements pour la prochaine étape :
             // Enlever les rangs dépassés.
-            index_number -= rang * casPossibles;
+            index_number -= rang * parRang;
             // Prochaine classe est forcément après :
             ++classe;
-            // Ajustement du coefficient : une classe de possibilité en moins.
-            coef /= 3;
+        }
+    }
+
+    /**
+     * Index of the code in the order of makeAt, for a code of full length :
+     * makeAt(rankOf()) gives back the code.
+     */
+    public long rankOf()
+    { return prefixIndex(index + 1); }
+
+    /**
+     * Index in the order of makeAt of the first code of full length beginning
+     * with the k first items of the code : its subtree is the range
+     * [prefixIndex(k), prefixIndex(k) + completions(k) - 1].
+     */
+    public long prefixIndex(int k)
+    {
+        long ranks = 0;
+        for(int i = 0 ; i < k ; ++i)
+        { ranks |= 1L << Trinucleotide.getRank(stack[i]); }
+        return rankOf(ranks, length);
+    }
+
+    /**
+     * Index in the order of makeAt of the code written on a line of an output
+     * file (words separated by spaces, in any order), the length of the code
+     * being its number of words.
+     *
+     * @return -1 if the line is not a code : no word, unknown word or two
+     *         words of the same class.
+     */
+    public static long rankOf(CharSequence line)
+    {
+        long ranks = 0;
+        int classes = 0, elem;
+        for(int i = 0 ; i + 3 <= line.length() ; i += 4)
+        {
+            elem = Trinucleotide.parse(line, i);
+            if(elem == Trinucleotide.NULL
+               || (classes & 1 << Trinucleotide.getClass(elem)) != 0)
+            { return -1; }
+            classes |= 1 << Trinucleotide.getClass(elem);
+            ranks |= 1L << Trinucleotide.getRank(elem);
+        }
+        if(ranks == 0) { return -1; }
+        return rankOf(ranks, Long.bitCount(ranks));
+    }
+
+    /**
+     * Index in the order of makeAt, for codes of the given length, of the
+     * first code beginning with the given ranks (bit 3*class + permutation
+     * set for each trinucleotide, one per class). Same
+     * steps as makeAt : the cases of the skipped classes, from the last class
+     * + 1 to the class of the trinucleotide, are summed in one go (sum of k
+     * parmi m for m from a to b = k+1 parmi b+1 - k+1 parmi a).
+     */
+    private static long rankOf(long ranks, int length)
+    {
+        long result = 0;
+        int classe = 0, rank, reste = length;
+        for( ; ranks != 0 ; ranks &= ranks - 1)
+        {
+            rank = Long.numberOfTrailingZeros(ranks);
+            --reste;
+            // Classes sautées :
+            result += (binomials[20 - classe][reste + 1] - binomials[20 - rank / 3][reste + 1])
+                      * pow3[reste + 1];
+            // Rangs sautés :
+            result += rank % 3 * binomials[19 - rank / 3][reste] * pow3[reste];
+            classe = rank / 3 + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Set the code at the given node of the tree of all the codes of length 1
+     * to maxLength(), in prefix order : a code comes just before the codes it
+     * is the beginning of. Used to count all the lengths in one pass.
+     */
+    public void makeAtNode(long index_number)
+    {
+        long casPossibles;
+        int classe = 0;
+        int rang;
+
+        clear();
+
+        for(int etape = 1 ; etape <= length ; ++etape)
+        {
+            // 1) Classe : chaque classe possible couvre 3 sous-arbres.
+            casPossibles = 3 * nodes[classe][length - etape];
+            while(casPossibles <= index_number)
+            {
+                ++classe;
+                index_number -= casPossibles;
+                casPossibles = 3 * nodes[classe][length - etape];
+            }
+
+            // 2) Rang : un sous-arbre par rang.
+            casPossibles /= 3;
+            rang = (int) (index_number / casPossibles);
+            push(Trinucleotide.get(classe, rang));
+            index_number -= rang * casPossibles;
+
+            // 3) Le code est la racine du sous-arbre, sinon descendre :
+            if(index_number == 0) { return; }
+            --index_number;
+            ++classe;
+        }
+    }
+
+    /**
+     * Set the code with the trinucleotides of the given ranks (bit 3*class +
+     * permutation set for each trinucleotide).
+     */
+    public void set(long ranks)
+    {
+        clear();
+        while(ranks != 0)
+        {
+            int rank = Long.numberOfTrailingZeros(ranks);
+            push(Trinucleotide.get(rank / 3, rank % 3));
+            ranks &= ranks - 1;
         }
     }
 
@@ -122,6 +240,39 @@ public class Code
 
     public int maxLength() { return length; }
 
+    /** @return Words of the code : bit w set if the word w (6 bits) is in it. */
+    public long getWords()
+    {
+        long words = 0;
+        for(int i = 0 ; i <= index ; ++i)
+        { words |= 1L << Trinucleotide.getWord(stack[i]); }
+        return words;
+    }
+
+    /**
+     * @return Number of nodes of the subtree of the code (itself included) in
+     *         the tree of makeAtNode.
+     */
+    public long subtree()
+    { return nodes[Trinucleotide.getClass(stack[index])][length - index - 1]; }
+
+    /**
+     * @return Number of codes of full length beginning with the code : size of
+     *         the range of its subtree in the indexes of makeAt.
+     */
+    public long completions()
+    { return completions(index + 1); }
+
+    /**
+     * @return Number of codes of full length beginning with the k first items
+     *         of the code.
+     */
+    public long completions(int k)
+    {
+        int reste = length - k;
+        return binomials[19 - Trinucleotide.getClass(stack[k - 1])][reste] * pow3[reste];
+    }
+
     /*
      * Méthode de manipulation du code :
      * ***********************************************************************/
@@ -152,6 +303,13 @@ public class Code
         return elem;
     }
 
+    /**
+     * Maintain the words that can still be added to the code, for a faster
+     * maximality test. Only the bitset engine keeps them, the matrix engine
+     * tests every missing class in testMax.
+     */
+    public void trackCandidates(boolean tracking) { }
+
     /**
      * Pop all item from the top while current item is at maximal class and
      * rank. The top item is always pop.
@@ -192,13 +350,25 @@ public class Code
 
     public boolean hasPrefix(int elem) { return prefixes[elem] != 0; }
 
+    /**
+     * Test if one of the pushed items, stack[0..index], is of the class : the
+     * items above index are left by pop, and are not part of the code.
+     */
     public boolean hasClass(int class_)
     {
-        for(int i = 0 ; i < length ; ++i)
+        for(int i = 0 ; i <= index ; ++i)
         { if(class_ == Trinucleotide.getClass(stack[i])) return true; }
         return false;
     }
 
+    /** Test if the n first items are the ones of ref. */
+    public boolean startsWith(Code ref, int n)
+    {
+        for(int i = 0 ; i < n ; ++i)
+        { if(stack[i] != ref.stack[i]) return false; }
+        return true;
+    }
+
     public boolean lowerEqual(Code ref)
     {
         // Sélection de la plus petite longueur :
@@ -220,18 +390,15 @@ public class Code
      */
 
     /**
-     * Uses the internal matrix for testing circularity of the code. Note :
-     * values on diagonal should be ignored, but as the matrix is initialized
-     * with 0, its like AAA and AAA is never in the code, so it is ok without
-     * adding more test.
+     * Uses the bridges table for testing circularity of the code. Note :
+     * bridges on diagonal should be ignored, but the bridge of a word with
+     * itself is one of its permutations, and a code never holds two
+     * permutations of the same class, so it is ok without adding more test.
      */
     public boolean testCircularity()
     {
         int index1, index2, index3, index4;
 
-        // Construire la matrice :
-        buildMatrix();
-
         // Amorce : inutile de regarder le dernier, si il y'a un collier avec,
         // on le trouve avant --> comparaison " < "
         for(index1 = 0 ; index1 < index ; ++index1)
@@ -244,9 +411,9 @@ public class Code
                 { // Vérifier si le code contient un élément de la matrice ayant
                     // le préfixe P1
                     // Ainsi qu'un préfixe P2, suffixe du 2eme élément courant.
-                    if(has(matrix[index1][index2]) && hasPrefix(Trinucleotide.getSuffixe(item(index2))))
+                    if(has(bridge(index1, index2)) && hasPrefix(Trinucleotide.getSuffixe(item(index2))))
                     { // Oui : Test 3 collier :
-                        if(has(matrix[index2][index1])) return false;
+                        if(has(bridge(index2, index1))) return false;
                         // Si pas de 3 collier, tester 4 collier :
                         // Boucle 4-collier
                         for(index3 = index1 + 1 ; index3 <= index ; ++index3)
@@ -254,14 +421,14 @@ public class Code
                             // matrice ayant le préfixe P2
                             // Ainsi qu'un préfixe P3, suffixe du 3eme élément
                             // courant
-                            if(has(matrix[index2][index3]) && hasPrefix(Trinucleotide.getSuffixe(item(index3))))
+                            if(has(bridge(index2, index3)) && hasPrefix(Trinucleotide.getSuffixe(item(index3))))
                             { // Oui ; Test 4 collier :
-                                if(has(matrix[index3][index1])) return false;
+                                if(has(bridge(index3, index1))) return false;
                                 // Si pas de 4 collier, tester 5 collier :
                                 // Boucle 5 collier
                                 for(index4 = index1 + 1 ; index4 <= index ; ++index4)
                                 { // Test 5 collier
-                                    if(has(matrix[index3][index4]) && has(matrix[index4][index1])) return false;
+                                    if(has(bridge(index3, index4)) && has(bridge(index4, index1))) return false;
                                 }// Fin for index 4
                             }// Fin if index 3
                         }// Fin for index 3
@@ -274,7 +441,7 @@ public class Code
 
     /**
      * Test if a trinucleotide code is maximal.
-     * Use the internal matrix.
+     * Use the bridges table.
      */
     public boolean testMax()
     {
@@ -315,15 +482,31 @@ public class Code
     }
 
     /**
-     * Build the matrix used for circularity tests and testes 3-LDCCN. MUST be
-     * call after a push, as it is an incremental construction.
+     * Words, among the given ones, keeping the code circular when added to
+     * it, without changing the code. The words are given and returned by
+     * their ranks (bit 3*class + permutation set for each word).
      */
-    public boolean TestAndBuildMatrix()
+    public long circularNext(long ranks)
     {
-        // 1) Construire la matrice :
-        buildMatrix();
+        long result = 0;
+        int rank;
+        for(long remaining = ranks ; remaining != 0 ; remaining &= remaining - 1)
+        {
+            rank = Long.numberOfTrailingZeros(remaining);
+            push(Trinucleotide.get(rank / 3, rank % 3));
+            if(testCircularity()) { result |= 1L << rank; }
+            pop();
+        }
+        return result;
+    }
 
-        // 2) test 3 collier :
+    /**
+     * Test 3-LDCCN with the bridges table. The name is kept from the time
+     * the bridges were stored in a matrix built after each push.
+     */
+    public boolean TestAndBuildMatrix()
+    {
+        // Test 3 collier :
         int index1, index2;
         for(index1 = 0 ; index1 < index ; ++index1)
         {
@@ -331,7 +514,7 @@ public class Code
             {
                 for(index2 = index1 + 1 ; index2 <= index ; ++index2)
                 {
-                    if(has(matrix[index1][index2]) && has(matrix[index2][index1]))
+                    if(has(bridge(index1, index2)) && has(bridge(index2, index1)))
                         return false;
                 }
             }
@@ -341,22 +524,13 @@ public class Code
     }
 
     /**
-     * Build the matrix used for circularity tests. MUST be call after each
-     * push, as it is an incremental construction.
+     * Necklace bridge between the items idx1 and idx2 of the stack : the word
+     * made of the suffix of the first and the first letter of the second.
      */
-    public void buildMatrix()
+    protected int bridge(int idx1, int idx2)
     {
-        // Élément de collier pour la nouvelle (dernière) colonne :
-        int precedentDernier = Trinucleotide.setLettre3(0, Trinucleotide.getLettre1(top()));
-
-        // Élément de collier pour la nouvelle (dernière) ligne :
-        int dernierPrecedent = Trinucleotide.setPrefixe(0, Trinucleotide.getSuffixe(top()));
-
-        for(int idx = 0 ; idx < index ; ++idx)
-        {
-            matrix[idx][index] = Trinucleotide.setPrefixe(precedentDernier, Trinucleotide.getSuffixe(item(idx)));
-            matrix[index][idx] = Trinucleotide.setLettre3(dernierPrecedent, Trinucleotide.getLettre1(item(idx)));
-        }
+        return bridges[Trinucleotide.getWord(stack[idx1])]
+                      [Trinucleotide.getWord(stack[idx2])];
     }
 
     /*
@@ -377,43 +551,177 @@ public class Code
         System.out.println();
     }
 
+    /** Print the words of the code in increasing order, separated by spaces. */
     public void print(Appendable out) throws IOException
+    { print(getWords(), out); }
+
+    /*
+     * Méthode de classe :
+     * ***********************************************************************
+     */
+
+    /**
+     * Print the code of a word mask (see getWords) as print(Appendable) : the
+     * words are taken in increasing order, nothing to sort.
+     */
+    public static void print(long words, Appendable out) throws IOException
     {
-        int[] stackClone = Arrays.copyOf(stack, index + 1);
+        for(long remaining = words ; remaining != 0 ; remaining &= remaining - 1)
+        {
+            if(remaining != words) { out.append(' '); }
+            Trinucleotide.print(Long.numberOfTrailingZeros(remaining), out);
+        }
+    }
 
-        for(int i = 0 ; i <= index ; ++i)
+    /**
+     * Word mask of the code written on a line of an output file (words
+     * separated by spaces).
+     *
+     * @return -1 if the line holds an unknown word.
+     */
+    public static long wordsOf(CharSequence line)
+    {
+        long words = 0;
+        int elem;
+        for(int i = 0 ; i + 3 <= line.length() ; i += 4)
+        {
+            elem = Trinucleotide.parse(line, i);
+            if(elem == Trinucleotide.NULL) { return -1; }
+            words |= 1L << Trinucleotide.getWord(elem);
+        }
+        return words;
+    }
+
+    /**
+     * Sort key of a word mask : the keys of two codes compare (as longs) as
+     * their printed lines. It is the rank of the mask in the prefix order of
+     * the tree of the increasing word lists, the subtree of a word w holding
+     * 2^(63-w) lists : number of words + sum of the subtrees of the words
+     * missing before the last one.
+     */
+    public static long sortKey(long words)
+    {
+        if(words == 0) { return Long.MIN_VALUE; }
+        int last = 63 - Long.numberOfLeadingZeros(words);
+        // Mots absents avant le dernier, le mot 0 au bit de poids fort :
+        long missing = last == 0 ? 0 : ~Long.reverse(words) & -1L << (64 - last);
+        // Rang non signé, décalé pour comparer en signé :
+        return (missing + Long.bitCount(words)) ^ Long.MIN_VALUE;
+    }
+
+    /** Word mask of a sort key : wordsOfKey(sortKey(words)) = words. */
+    public static long wordsOfKey(long key)
+    {
+        long rank = key ^ Long.MIN_VALUE, words = 0, subtree;
+        int word = 0;
+        while(rank != 0)
         {
-            stackClone[i] &= Trinucleotide.MASK_WORD;
+            --rank; // Le noeud courant
+            // Sous-arbres sautés (comparaison non signée) :
+            while(((subtree = 1L << (63 - word)) ^ Long.MIN_VALUE) <= (rank ^ Long.MIN_VALUE))
+            {
+                rank -= subtree;
+                ++word;
+            }
+            words |= 1L << word++;
         }
+        return words;
+    }
 
-        Arrays.sort(stackClone);
+    /**
+     * Table of the necklace bridges : bridges[w1][w2] is the word made of the
+     * suffix of w1 and the first letter of w2. It only depends on the two
+     * words, so it is computed once for all the 64x64 pairs.
+     */
+    private static final int[][] bridges = new int[64][64];
+    static
+    {
+        for(int w1 = 0 ; w1 < 64 ; ++w1)
+        {
+            for(int w2 = 0 ; w2 < 64 ; ++w2)
+            {
+                bridges[w1][w2] = Trinucleotide.setLettre3(
+                        Trinucleotide.setPrefixe(0, Trinucleotide.getSuffixe(w1)),
+                        Trinucleotide.getLettre1(w2));
+            }
+        }
+    }
 
-        for (int i = 0; i <= index; ++i)
+    /**
+     * Tree of all the codes in prefix order : nodes[c][r] is the number of
+     * codes beginning with a given word of class c and having at most r more
+     * words (the word itself included).
+     */
+    private static final long[][] nodes = new long[20][20];
+    static
+    {
+        for(int r = 0 ; r < 20 ; ++r)
         {
-            if(i > 0) {
-                out.append(' ');
+            for(int c = 19 ; c >= 0 ; --c)
+            {
+                nodes[c][r] = 1;
+                if(r > 0)
+                {
+                    for(int next = c + 1 ; next < 20 ; ++next)
+                    { nodes[c][r] += 3 * nodes[next][r - 1]; }
+                }
             }
-            Trinucleotide.print(stackClone[i], out);
         }
+    }
 
+    /**
+     * Nombre de codes de longueur 1 à length : nombre de noeuds de l'arbre de
+     * makeAtNode.
+     */
+    public static long nodeCount(int length)
+    {
+        long resultat = 0;
+        for(int c = 0 ; c < 20 ; ++c)
+        { resultat += 3 * nodes[c][length - 1]; }
+        return resultat;
     }
 
-    /*
-     * Méthode de classe :
-     * ***********************************************************************
+    /**
+     * Triangle de Pascal : binomials[n][k] = k parmi n, pour n et k de 0 à 20
+     * (0 si k > n).
      */
+    private static final long[][] binomials = new long[21][21];
+    /** Puissances de 3 : pow3[n] = 3^n, pour n de 0 à 20. */
+    private static final long[]   pow3 = new long[21];
+    static
+    {
+        pow3[0] = 1;
+        for(int n = 0 ; n <= 20 ; ++n)
+        {
+            if(n > 0) { pow3[n] = 3 * pow3[n - 1]; }
+            binomials[n][0] = 1;
+            for(int k = 1 ; k <= n ; ++k)
+            { binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k]; }
+        }
+    }
 
     /**
      * Calcul des combinaisons k parmis n
      */
     public static long combinaison(int k, int n)
     {
+        if(k == 0) { return 1; }
+        if(k < 0 || n < k) { return 0; }
+        if(n < binomials.length) { return binomials[n][k]; }
+        // Hors de la table : calcul direct.
         long resultat = 1;
         for(int i = 0 ; i < k ; i++)
         { resultat = resultat * (n - i) / (i + 1); }
         return resultat;
     }
 
+    /**
+     * Nombre de codes de longueur length : taille de l'espace des index de
+     * makeAt, (length parmi 20) * 3^length.
+     */
+    public static long codeCount(int length)
+    { return binomials[20][length] * pow3[length]; }
+
     /*
      * Autres tests utilisés pour la méthode TestAndBuildMatrix :
      * le 3-LDCCN est, au final, le plus performant et celui en place dane le code.
@@ -422,10 +730,7 @@ public class Code
 
     public boolean Test_4LDCCN_AndBuildMatrix()
     {
-        // 1) Construire la matrice :
-        buildMatrix();
-
-        // 2) test 4 collier :
+        // Test 4 collier :
         int index1, index2, index3;
         for(index1=0; index1<index; ++index1)
         {
@@ -433,11 +738,11 @@ public class Code
             {
                 for( index2=index1+1 ; index2<=index ; ++index2 )
                 {
-                    if( has(matrix[index1][index2]) && hasPrefix(Trinucleotide.getSuffixe(item(index2))) )
+                    if( has(bridge(index1, index2)) && hasPrefix(Trinucleotide.getSuffixe(item(index2))) )
                     {
-                        if( has(matrix[index2][index1])) return false;
+                        if( has(bridge(index2, index1))) return false;
                         for(index3=index1+1; index3<=index; ++index3)
-                        { if( has(matrix[index2][index3]) && has(matrix[index3][index1]) )  return false; }
+                        { if( has(bridge(index2, index3)) && has(bridge(index3, index1)) )  return false; }
                     }
                 }
             }
@@ -447,10 +752,7 @@ public class Code
 
     public boolean Test_5LDCCN_AndBuildMatrix()
     {
-        // 1) Construire la matrice :
-        buildMatrix();
-
-        // 2) test 5 collier :
+        // Test 5 collier :
         int index1, index2, index3, index4;
         for(index1=0; index1<index; ++index1)
         {
@@ -458,17 +760,17 @@ public class Code
             {
                 for( index2=index1+1 ; index2<=index ; ++index2 )
                 {
-                    if( has(matrix[index1][index2]) && hasPrefix(Trinucleotide.getSuffixe(item(index2))) )
+                    if( has(bridge(index1, index2)) && hasPrefix(Trinucleotide.getSuffixe(item(index2))) )
                     {
-                        if( has(matrix[index2][index1])) return false;
+                        if( has(bridge(index2, index1))) return false;
                         for(index3=index1+1; index3<=index; ++index3)
                         {
-                            if( has(matrix[index2][index3]) && hasPrefix( Trinucleotide.getSuffixe(item(index3))))
+                            if( has(bridge(index2, index3)) && hasPrefix( Trinucleotide.getSuffixe(item(index3))))
                             {
-                                if( has(matrix[index3][index1]) )  return false;
+                                if( has(bridge(index3, index1)) )  return false;
 
                                 for(index4=index1+1; index4<=index; ++index4)
-                                { if( has(matrix[index3][index4]) && has(matrix[index4][index1])) return false; }
+                                { if( has(bridge(index3, index4)) && has(bridge(index4, index1))) return false; }
                             }
                         }
                     }
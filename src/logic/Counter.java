@@ -1,6 +1,10 @@
 package logic;
 
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import code.OutputFile;
 
 public class Counter
@@ -12,11 +16,31 @@ public class Counter
     private long      circularCount;
     private long      maximalCount;
     private long      generated;
+    // Index traités depuis la création (sous-arbres élagués compris) :
+    private long      done;
+    // done publié pour les autres threads toutes les 256 itérations, seul sur
+    // sa ligne de cache (index PAD) :
+    private static final int PAD = 8;
+    private final AtomicLongArray published = new AtomicLongArray(2 * PAD + 1);
+    // Par longueur (index longueur-1), mode croissance :
+    private final long[] circularCounts;
+    private final long[] maximalCounts;
 
     // Trinucleotide codes boudaries
     private Code      code;
     private Code      upperBound;
 
+    // Symmetry reduction : null if none.
+    private Canonical canonical;
+    private boolean   representatives;
+    private Code      image;
+
+    // Compteurs de l'arbre de recherche : null si non demandés.
+    private Statistics stats;
+
+    // Partage de la fin de la plage en cours : null si aucun.
+    private Splitter  splitter;
+
     // Code's information
     private final int length;
     private final int baseClassCompare; // Voir count() comment
@@ -25,6 +49,13 @@ public class Counter
      * Constructor :
      *************************************************************************/
     public Counter(int length_)
+    { this(length_, false); }
+
+    /**
+     * @param bitEngine use the bitset engine (BitCode) instead of the matrix
+     *                  one (Code) for the tested code.
+     */
+    public Counter(int length_, boolean bitEngine)
     {
         // Récupération :
         length = length_;
@@ -33,10 +64,12 @@ public class Counter
         generated = 0;
         circularCount = 0;
         maximalCount = 0;
+        circularCounts = new long[length];
+        maximalCounts = new long[length];
 
         // Initialisation des codes :
         upperBound = new Code(length);
-        code = new Code(length);
+        code = bitEngine ? new BitCode(length) : new Code(length);
 
         // Base pour comparaisons utilisées dans construction des codes :
         baseClassCompare = 21 - length;
@@ -52,6 +85,60 @@ public class Counter
 
     public long getGenerated() { return generated; }
 
+    /**
+     * @return Number of indexes done by all the calls to count or grow since
+     *         the creation of the counter, the indexes of the pruned subtrees
+     *         included. Grows linearly during a call, whatever is pruned, and
+     *         is exact at its end. Published every 256 steps : may be read
+     *         by any thread.
+     */
+    public long getIndexesDone() { return published.get(PAD); }
+
+    /**
+     * @return Circular codes found by grow, per length (index length-1). Not
+     *         to be modified.
+     */
+    public long[] getCircularCounts() { return circularCounts; }
+
+    /**
+     * @return Maximal codes found by grow, per length (index length-1). Not
+     *         to be modified.
+     */
+    public long[] getMaximalCounts() { return maximalCounts; }
+
+    /**
+     * Count the nodes of the search tree per depth (see Statistics), summed
+     * over all the calls to count and grow. Off by default : the tests then
+     * only cost a null check.
+     */
+    public void setStatistics(boolean enabled)
+    { stats = enabled ? new Statistics(length) : null; }
+
+    /** @return The counters of the search tree, null if not enabled. */
+    public Statistics getStatistics() { return stats; }
+
+    /**
+     * Let count give away the end of its range while running (see Splitter).
+     * Null (default) to always count the whole range.
+     */
+    public void setSplitter(Splitter splitter_) { splitter = splitter_; }
+
+    /**
+     * Only visit the representatives of the orbits of the codes under a
+     * symmetry group. The circular and maximal counts are still the ones of
+     * all the codes (each representative counts for its orbit), but the
+     * generated count is the one of the visited codes.
+     *
+     * @param representatives write only the representatives in the output,
+     *                        instead of all the codes of their orbits.
+     */
+    public void setSymmetry(Symmetry symmetry, boolean representatives_)
+    {
+        canonical = symmetry == Symmetry.NONE ? null : new Canonical(symmetry, length);
+        representatives = representatives_;
+        image = canonical == null ? null : new Code(length);
+    }
+
     /*
      * Fonctions de test selon les cas.
      *************************************************************************/
@@ -66,36 +153,76 @@ public class Counter
      * Ex : length = 5 : maximal class for the FIRST trinucleotide is 20-5 = 15.
      * For all trinucleotides, the classe must be <= 20-5+code.length()
      * that is < 21-length-code.length()
+     *
+     * Without output, maximal codes nor symmetry, the last level is counted
+     * in one step for each prefix (see Code.circularNext) : the leaves are
+     * neither pushed nor compared to the upper bound one by one.
      */
     public void count(long startIndex, long endIndex, OutputFile output, boolean countMax)
     {
         // Génération des bornes :
+        code.trackCandidates(countMax);
         upperBound.makeAt(endIndex);
         code.makeAt(startIndex);
+        if(canonical != null)
+        { canonical.reset(code); }
 
         // Réinitialisation des compteurs :
         generated = 0;
         circularCount = 0;
         maximalCount = 0;
+        long doneBefore = done;
 
         // Trinucleotide temporaire :
         int last = 0;
+        // Nombre de codes représentés par le code courant :
+        int orbit;
+        // Dernier niveau compté en une fois :
+        boolean countOnly = output == OutputFile.devNull && !countMax && canonical == null;
+        int first;
+        long leaves;
+        // Itérations depuis la dernière demande de partage :
+        int steps = 0;
 
         do
         {
+            // Tester tout le dernier niveau :
+            if(code.length() == length && countOnly)
+            {
+                // Rangs des derniers trinucléotides, du courant jusqu'au
+                // dernier de la table ou à celui de la borne :
+                first = Trinucleotide.getRank(code.pop());
+                last = code.startsWith(upperBound, length - 1)
+                     ? Trinucleotide.getRank(upperBound.item(length - 1)) : 59;
+                leaves = (2L << last) - (1L << first);
+                generated += Long.bitCount(leaves);
+                done += Long.bitCount(leaves);
+                orbit = Long.bitCount(code.circularNext(leaves));
+                circularCount += orbit;
+                if(stats != null)
+                {
+                    stats.leaves[length - 1] += Long.bitCount(leaves);
+                    stats.notCircular[length - 1] += Long.bitCount(leaves) - orbit;
+                }
+
+                // Reprendre après le dernier compté :
+                code.push(Trinucleotide.get(last / 3, last % 3));
+            }
             // Tester code courant :
-            if(code.length() == length)
+            else if(code.length() == length)
             {
                 ++generated;
-                if(code.testCircularity())
+                ++done;
+                if(testCircularity())
                 {
-                    ++circularCount;
-                    if(!countMax)
-                    { output.writeCode(code); }
-                    if(countMax && code.testMax())
+                    orbit = canonical == null ? 1 : canonical.orbitSize(code);
+                    circularCount += orbit;
+                    if(orbit != 0 && !countMax)
+                    { write(output); }
+                    if(orbit != 0 && countMax && testMax())
                     {
-                        output.writeCode(code);
-                        ++maximalCount;
+                        write(output);
+                        maximalCount += orbit;
                     }
                 }
             }
@@ -108,14 +235,254 @@ public class Counter
                 do
                 {
                     code.push(last);
-                   // code.buildMatrix();
                     last = Trinucleotide.nextClasse(last);
-                } while(code.length() < length && code.TestAndBuildMatrix());
+                } while(code.length() < length && testPrefix());
+
+                // Préfixe élagué : tous les codes qui commencent par lui
+                // sont traités.
+                if(code.length() < length)
+                { done += code.completions(); }
+            }
+
+            // Publier l'avancement, donner la fin de la plage si elle est
+            // demandée :
+            if((++steps & 0xFF) == 0)
+            {
+                published.lazySet(PAD, done);
+                if(splitter != null && splitter.isWanted())
+                { endIndex = split(endIndex); }
             }
-           
 
         } while(code.lowerEqual(upperBound) && !code.empty());
+
+        // Une seule longueur :
+        Arrays.fill(circularCounts, 0);
+        Arrays.fill(maximalCounts, 0);
+        circularCounts[length - 1] = circularCount;
+        maximalCounts[length - 1] = maximalCount;
+
+        // Le dernier sous-arbre élagué peut dépasser la borne. Après la
+        // fermeture : tout est fini quand tous les index sont traités.
         output.close();
+        done = doneBefore + endIndex - startIndex + 1;
+        published.lazySet(PAD, done);
+    }
+
+    /**
+     * Count the circular codes of all the lengths from 1 to length in one
+     * pass, from startIndex to endIndex included in the tree of
+     * Code.makeAtNode. As a code containing a code which is not circular is
+     * not circular, the subtree of a code which is not circular is skipped.
+     * The total counts are the ones of all the lengths.
+     */
+    public void grow(long startIndex, long endIndex, OutputFile output, boolean countMax)
+    {
+        // Génération du premier code :
+        code.trackCandidates(countMax);
+        code.makeAtNode(startIndex);
+        if(canonical != null)
+        { canonical.reset(code); }
+
+        // Réinitialisation des compteurs :
+        generated = 0;
+        circularCount = 0;
+        maximalCount = 0;
+        Arrays.fill(circularCounts, 0);
+        Arrays.fill(maximalCounts, 0);
+        long doneBefore = done;
+
+        // Index du code courant et du code suivant son sous-arbre :
+        long position = startIndex, next;
+        int last, orbit, depth;
+
+        while(position <= endIndex)
+        {
+            // Tester code courant :
+            ++generated;
+            done = doneBefore + position - startIndex;
+            if((generated & 0xFF) == 0) { published.lazySet(PAD, done); }
+            depth = code.length();
+            next = position + code.subtree();
+            orbit = 0;
+            if(stats != null) { ++stats.nodes[depth - 1]; }
+            if(testCircularity())
+            {
+                orbit = canonical == null ? 1
+                      : canonical.testPrefix(code) ? canonical.orbit(code) : 0;
+            }
+            if(orbit != 0)
+            {
+                circularCount += orbit;
+                circularCounts[depth - 1] += orbit;
+                if(!countMax)
+                { write(output); }
+                else if(testMax())
+                {
+                    write(output);
+                    maximalCount += orbit;
+                    maximalCounts[depth - 1] += orbit;
+                }
+
+                // Descendre : premier code commençant par le code courant.
+                last = Trinucleotide.nextClasse(code.top());
+                if(depth < length && Trinucleotide.getClass(last) < 20)
+                {
+                    code.push(last);
+                    ++position;
+                    continue;
+                }
+            }
+
+            // Sous-arbre fini : passer au code suivant, en remontant tant que
+            // le sommet est le dernier de son niveau (son sous-arbre finit
+            // alors avec celui du niveau au-dessous).
+            position = next;
+            last = Trinucleotide.next(code.pop());
+            while(Trinucleotide.getClass(last) >= 20 && !code.empty())
+            { last = Trinucleotide.next(code.pop()); }
+            if(Trinucleotide.getClass(last) >= 20) { break; }
+            code.push(last);
+        }
+        output.close();
+        done = doneBefore + endIndex - startIndex + 1;
+        published.lazySet(PAD, done);
+    }
+
+    /**
+     * Estimate of the work of count on [startIndex, endIndex] : the number
+     * of nodes of the search tree it visits, from random indexes. Each index
+     * is on the path of the prefixes of its code, up to the first one cut by
+     * the 3-LDCCN test, and a prefix is visited once for all its completions :
+     * an index weighs the sum of 1/completions over its path, and the range
+     * its size times the mean weight of the samples.
+     */
+    public double estimate(long startIndex, long endIndex, int samples, Random random)
+    {
+        long size = endIndex - startIndex + 1;
+        double weight = 0;
+        int k;
+
+        for(int i = 0 ; i < samples ; ++i)
+        {
+            upperBound.makeAt(startIndex + (long) (random.nextDouble() * size));
+            code.clear();
+            for(k = 0 ; k < length ; ++k)
+            {
+                code.push(upperBound.item(k));
+                weight += 1.0 / code.completions();
+                if(k < length - 1 && !code.TestAndBuildMatrix()) { break; }
+            }
+        }
+        return size * weight / samples;
+    }
+
+    /**
+     * Give away the end of the range, from the subtree following the one of
+     * the shortest prefix of the current code which ends before endIndex.
+     *
+     * @return The new end of the range.
+     */
+    private long split(long endIndex)
+    {
+        long end;
+        for(int k = 1 ; k < code.length() ; ++k)
+        {
+            end = code.prefixIndex(k) + code.completions(k) - 1;
+            if(end < endIndex)
+            {
+                splitter.give(end + 1, endIndex);
+                upperBound.makeAt(end);
+                return end;
+            }
+        }
+        return endIndex;
+    }
+
+    /**
+     * Tests of a prefix pushed by count : 3-LDCCN, then symmetry.
+     */
+    private boolean testPrefix()
+    {
+        if(stats != null) { ++stats.nodes[code.length() - 1]; }
+        if(!code.TestAndBuildMatrix())
+        {
+            if(stats != null) { ++stats.rejected[code.length() - 1]; }
+            return false;
+        }
+        return canonical == null || canonical.testPrefix(code);
+    }
+
+    /** Circularity test of the current code, counted. */
+    private boolean testCircularity()
+    {
+        boolean result = code.testCircularity();
+        if(stats != null)
+        {
+            ++stats.leaves[code.length() - 1];
+            if(!result) { ++stats.notCircular[code.length() - 1]; }
+        }
+        return result;
+    }
+
+    /** Maximality test of the current code, timed. */
+    private boolean testMax()
+    {
+        if(stats == null) { return code.testMax(); }
+        long time = System.nanoTime();
+        boolean result = code.testMax();
+        stats.maxNanos[code.length() - 1] += System.nanoTime() - time;
+        return result;
+    }
+
+    /**
+     * Write the current code, or all the codes of its orbit under the
+     * symmetry group.
+     */
+    private void write(OutputFile output)
+    {
+        if(canonical == null || representatives)
+        {
+            output.writeCode(code);
+            return;
+        }
+        if(output == OutputFile.devNull) { return; }
+
+        int order = canonical.getSymmetry().order(), h;
+        long ranks;
+        for(int g = 0 ; g < order ; ++g)
+        {
+            // Images are written once, for the first element giving them :
+            ranks = canonical.image(code, g);
+            for(h = 0 ; h < g && canonical.image(code, h) != ranks ; ++h) { }
+            if(h == g)
+            {
+                image.set(ranks);
+                output.writeCode(image);
+            }
+        }
+    }
+
+    /*
+     * Interface de partage de la plage en cours :
+     *************************************************************************/
+
+    /**
+     * Lets count give away the end of its range, on subtree boundaries, when
+     * other threads have nothing to do. Only used by count, not by grow.
+     */
+    public interface Splitter
+    {
+        /**
+         * @return true if the end of the range should be given away. Polled
+         *         regularly by count.
+         */
+        public boolean isWanted();
+
+        /**
+         * The range [startIndex, endIndex] is given away : it is not counted
+         * by this call to count anymore.
+         */
+        public void give(long startIndex, long endIndex);
     }
 
 }
@@ -0,0 +1,78 @@
+package logic;
+
+import java.io.IOException;
+
+/**
+ * Counters of the search tree of a Counter, per depth (index length-1 of the
+ * codes) : to see where the time goes and what a pruning test changes.
+ *
+ * Only filled when set on the Counter ; the counters of several Counters are
+ * summed with add.
+ */
+public class Statistics
+{
+    /*
+     * Data :
+     *************************************************************************/
+
+    /**
+     * Codes pushed before the 3-LDCCN test (codes shorter than the length),
+     * or visited in growth mode.
+     */
+    public final long[] nodes;
+    /** Codes rejected by the 3-LDCCN test (TestAndBuildMatrix). */
+    public final long[] rejected;
+    /** Codes tested for circularity. */
+    public final long[] leaves;
+    /** Codes found not circular by the circularity test. */
+    public final long[] notCircular;
+    /** Time spent in testMax, in nanoseconds. */
+    public final long[] maxNanos;
+
+    /*
+     * Constructor :
+     *************************************************************************/
+
+    /** Constructor : take as parameter the length of the codes. */
+    public Statistics(int length)
+    {
+        nodes = new long[length];
+        rejected = new long[length];
+        leaves = new long[length];
+        notCircular = new long[length];
+        maxNanos = new long[length];
+    }
+
+    /*
+     * Methods :
+     *************************************************************************/
+
+    /** Add the counters of other, of the same length, to these ones. */
+    public void add(Statistics other)
+    {
+        for(int i = 0 ; i < nodes.length ; ++i)
+        {
+            nodes[i] += other.nodes[i];
+            rejected[i] += other.rejected[i];
+            leaves[i] += other.leaves[i];
+            notCircular[i] += other.notCircular[i];
+            maxNanos[i] += other.maxNanos[i];
+        }
+    }
+
+    /** Print a line per depth (length of the codes), the empty ones skipped. */
+    public void print(Appendable out) throws IOException
+    {
+        out.append("length\tnodes\t3-LDCCN\tleaves\tnot circular\ttestMax (ms)\n");
+        for(int i = 0 ; i < nodes.length ; ++i)
+        {
+            if(nodes[i] == 0 && leaves[i] == 0) { continue; }
+            out.append(Integer.toString(i + 1)).append('\t')
+               .append(Long.toString(nodes[i])).append('\t')
+               .append(Long.toString(rejected[i])).append('\t')
+               .append(Long.toString(leaves[i])).append('\t')
+               .append(Long.toString(notCircular[i])).append('\t')
+               .append(Long.toString(maxNanos[i] / 1000000)).append('\n');
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package logic;
+
+/**
+ * Symmetry groups preserving the circularity of trinucleotide codes.
+ *
+ * Each group acts on the words by permuting the letters A, C, G, T and/or by
+ * reading the words backward. Both map a class of trinucleotides on a class,
+ * and a circular (maximal) code on a circular (maximal) code of the same
+ * length.
+ *
+ * The words are numbered by their rank in the enumeration order of Code :
+ * rank = 3*class + permutation, from 0 to 59. A code is then a 60 bits mask.
+ */
+public enum Symmetry
+{
+    /** No symmetry : the identity only. */
+    NONE(new int[][] { { 0, 1, 2, 3 } }, false),
+    /** Complementation (A-T, C-G) and reversal : 4 elements. */
+    COMPLEMENT(new int[][] { { 0, 1, 2, 3 }, { 3, 2, 1, 0 } }, true),
+    /** The 24 permutations of the letters. */
+    LETTERS(permutations(), false),
+    /** The 24 permutations of the letters and the reversal : 48 elements. */
+    FULL(permutations(), true);
+
+    /*
+     * Data :
+     *************************************************************************/
+
+    /** images[g][rank] : rank of the image of the word by the element g. */
+    private final int[][]  images;
+    /** masks[rank][g] : bit of the image of the word by the element g. */
+    private final long[][] masks;
+    /**
+     * limits[rank][g] : bit of the lowest rank of the images of the ranks
+     * above (bit 60 if none).
+     */
+    private final long[][] limits;
+
+    /*
+     * Constructor :
+     *************************************************************************/
+
+    /**
+     * @param letters permutations of the letters of the group.
+     * @param reversal also compose them with the reversal of the words.
+     */
+    private Symmetry(int[][] letters, boolean reversal)
+    {
+        int[] ranks = new int[64];
+        int classe, rang, word, g = 0;
+
+        for(classe = 0 ; classe < 20 ; ++classe)
+        {
+            for(rang = 0 ; rang < 3 ; ++rang)
+            { ranks[Trinucleotide.getWord(Trinucleotide.get(classe, rang))] = 3 * classe + rang; }
+        }
+
+        images = new int[letters.length * (reversal ? 2 : 1)][60];
+        for(int[] permutation : letters)
+        {
+            for(int reverse = 0 ; reverse < (reversal ? 2 : 1) ; ++reverse, ++g)
+            {
+                for(int rank = 0 ; rank < 60 ; ++rank)
+                {
+                    word = Trinucleotide.getWord(Trinucleotide.get(rank / 3, rank % 3));
+                    images[g][rank] = ranks[apply(word, permutation, reverse == 1)];
+                }
+            }
+        }
+
+        masks = new long[60][images.length];
+        limits = new long[60][images.length];
+        int lowest;
+        for(g = 0 ; g < images.length ; ++g)
+        {
+            lowest = 60;
+            for(int rank = 59 ; rank >= 0 ; --rank)
+            {
+                masks[rank][g] = 1L << images[g][rank];
+                limits[rank][g] = 1L << lowest;
+                lowest = Math.min(lowest, images[g][rank]);
+            }
+        }
+    }
+
+    /*
+     * Access :
+     *************************************************************************/
+
+    /** @return Number of elements of the group, the identity being 0. */
+    public int order() { return images.length; }
+
+    /** @return Rank of the image of the word of the given rank by g. */
+    public int image(int g, int rank) { return images[g][rank]; }
+
+    /**
+     * @return For each element of the group, the bit of the image of the word
+     *         of the given rank. Not to be modified.
+     */
+    public long[] imageMasks(int rank) { return masks[rank]; }
+
+    /**
+     * @return For each element of the group, the bit of the lowest image of
+     *         the ranks above the given one (bit 60 if there are none). Not to
+     *         be modified.
+     */
+    public long[] limitMasks(int rank) { return limits[rank]; }
+
+    /*
+     * Class's methods :
+     *************************************************************************/
+
+    /** Image of a word by a permutation of the letters and the reversal. */
+    private static int apply(int word, int[] permutation, boolean reverse)
+    {
+        int l1 = permutation[Trinucleotide.getLettre1(word)];
+        int l2 = permutation[(word & Trinucleotide.MASK_LETTER2) >> 2];
+        int l3 = permutation[Trinucleotide.getLettre3(word)];
+        return reverse ? l3 << 4 | l2 << 2 | l1 : l1 << 4 | l2 << 2 | l3;
+    }
+
+    /** The 24 permutations of the 4 letters, the identity first. */
+    private static int[][] permutations()
+    {
+        int[][] result = new int[24][];
+        int n = 0;
+        for(int a = 0 ; a < 4 ; ++a)
+        {
+            for(int b = 0 ; b < 4 ; ++b)
+            {
+                for(int c = 0 ; c < 4 ; ++c)
+                {
+                    if(a != b && a != c && b != c)
+                    { result[n++] = new int[] { a, b, c, 6 - a - b - c }; }
+                }
+            }
+        }
+        return result;
+    }
+}
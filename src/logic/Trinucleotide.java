@@ -83,6 +83,9 @@ public class Trinucleotide
     public static int getLettre1(int mot)
     { return (mot & MASK_LETTER1) >> 4; }
 
+    public static int getLettre3(int mot)
+    { return (mot & MASK_LETTER3); }
+
     public static int setLettre3(int mot, int val)
     { return (mot & ~MASK_LETTER3) | val; }
 
@@ -112,6 +115,10 @@ public class Trinucleotide
     public static int getWord(int word)
     { return (word & MASK_WORD); }
 
+    /** Rank of the trinucleotide in the table : 3*class + permutation. */
+    public static int getRank(int word)
+    { return 3 * getClass(word) + getPermutation(word); }
+
     public static int setClass(int mot, int class_)
     { return (mot & ~MASK_CLASS) | class_ << 8; }
 
@@ -191,12 +198,56 @@ public class Trinucleotide
         }
     }
 
+    /**
+     * The trinucleotides of the table by word, NULL for the 4 periodic
+     * words.
+     */
+    private static int[] byWord = new int[64];
+    static
+    {
+        for (int i = 0; i < 64; ++i) { byWord[i] = NULL; }
+        for (int i = 0; i < 20; ++i)
+        {
+            for (int j = 0; j < 3; ++j) { byWord[getWord(table[i][j])] = table[i][j]; }
+        }
+    }
+
     /**
      * Get a trinucleotide from the table with its class and permutation
      */
     public static int get(int class_, int permutation)
     { return table[class_][permutation]; }
 
+    /**
+     * Get the trinucleotide from the table having the given word (6 bits).
+     * The NULL trinucleotide is returned for the periodic words.
+     */
+    public static int getByWord(int word)
+    { return byWord[word & MASK_WORD]; }
+
+    /**
+     * Read the trinucleotide written with 3 letters at offset in s (as by
+     * print). The NULL trinucleotide is returned if the letters are not a
+     * word of the table.
+     */
+    public static int parse(CharSequence s, int offset)
+    {
+        int word = 0;
+        for (int i = 0; i < 3; ++i)
+        {
+            word = word << 2;
+            switch (s.charAt(offset + i))
+            {
+                case 'A': word = word | LETTRE_A; break;
+                case 'C': word = word | LETTRE_C; break;
+                case 'G': word = word | LETTRE_G; break;
+                case 'T': word = word | LETTRE_T; break;
+                default: return NULL;
+            }
+        }
+        return byWord[word];
+    }
+
     /**
      * Get the trinucleotide from the table that follow "word".
      * If "word" is the last, the NULL trinucleotide is returned. 